@@ -1,18 +1,64 @@
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.IntStream;
 
 public class PingClient {
     private static final int MAX_TIMEOUT = 1000; // in milliseconds
     private static final int DEFAULT_PING_COUNT = 10;
+    private static final byte[] TAG = "PingUDP ".getBytes(StandardCharsets.US_ASCII);
+    // states of a pipelined ping
+    private static final int PENDING = 0;
+    private static final int REPLIED = 1;
+    private static final int TIMED_OUT = 2;
+    // Binary timestamp protocol, see udpping.PingPayload: magic, version, seq, client tx, server rx, server tx
+    private static final int TS_MAGIC = 0x8F505453;
+    private static final int TS_LENGTH = 40;
+    // Wall-clock anchor for converting System.nanoTime() to epoch nanos without reading the clock per packet
+    private static final long ANCHOR_NANO_TIME = System.nanoTime();
+    private static final long ANCHOR_EPOCH_NANOS = epochNow();
 
     public static void main(String[] args) throws IOException {
+        // Separate --key=value options from positional arguments
+        List<String> positional = new ArrayList<>();
+        int window = 0;
+        int rate = 0;
+        int clients = 0;
+        int duration = 10;
+        int threads = 1;
+        String csv = null;
+        boolean timestamps = false;
+        for (String arg : args) {
+            if (arg.startsWith("--window=")) {
+                window = Integer.parseInt(arg.substring("--window=".length()));
+            } else if (arg.startsWith("--rate=")) {
+                rate = Integer.parseInt(arg.substring("--rate=".length()));
+            } else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                duration = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--csv=")) {
+                csv = arg.substring("--csv=".length());
+            } else if (arg.equals("--timestamps")) {
+                timestamps = true;
+            } else {
+                positional.add(arg);
+            }
+        }
+        args = positional.toArray(new String[0]);
+
         // Command line argument validation
         if (args.length < 2) {
-            System.out.println("Required arguments: host port [pingCount]");
+            System.out.println("Required arguments: host port [pingCount] [--window=N] [--rate=pps] [--timestamps]");
+            System.out.println("Load generator: host port --clients=N --rate=pps [--duration=s] [--threads=T] [--csv=file]");
             return;
         }
 
@@ -22,6 +68,28 @@ public class PingClient {
         //If there is a third parameter, convert it to an integer as the number of pings, otherwise use the default value
         int pingCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PING_COUNT;
 
+        if (clients > 0) {
+            try {
+                new PingLoadGenerator(new InetSocketAddress(host, port), clients, Math.max(rate, 1), duration, threads).run(csv);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        if (window > 0 || rate > 0) {
+            // Without --window, keep enough pings in flight to sustain the rate for a full timeout
+            int inFlight = window > 0 ? window
+                    : (int) Math.max(1, Math.min(pingCount, (long) rate * MAX_TIMEOUT / 1000));
+            runPipelined(args[0], host, port, pingCount, inFlight, rate, timestamps);
+            return;
+        }
+
+        if (timestamps) {
+            runTimestamped(args[0], host, port, pingCount);
+            return;
+        }
+
         try (DatagramSocket socket = new DatagramSocket()) {
             socket.setSoTimeout(MAX_TIMEOUT);
             List<Long> rttList = new ArrayList<>();
@@ -73,4 +141,328 @@ public class PingClient {
             }
         }
     }
+
+    /**
+     * Pipelined mode: up to {@code window} pings are in flight at once, optionally paced to {@code rate}
+     * packets per second. Replies are matched by sequence number, so reordered, duplicated and late
+     * replies are classified instead of being treated as timeouts. Buffers are reused on both loops.
+     */
+    private static void runPipelined(String name, InetAddress host, int port, int pingCount, int window, int rate,
+                                     boolean timestamps) throws IOException {
+        final long seq = System.currentTimeMillis();
+        final long[] sendTimes = new long[pingCount];
+        final long[] rtts = new long[pingCount];
+        // forward delay, server residence and return delay per reply, indexed like rtts
+        final long[][] legs = timestamps ? new long[3][pingCount] : null;
+        final AtomicIntegerArray states = new AtomicIntegerArray(pingCount);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicInteger reordered = new AtomicInteger();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final AtomicInteger late = new AtomicInteger();
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(MAX_TIMEOUT);
+        final long interval = rate > 0 ? 1_000_000_000L / rate : 0;
+
+        Thread receiver;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(MAX_TIMEOUT);
+            System.out.printf("正在 Ping %s (窗口 = %d, 速率 = %s):%n", name, window, rate > 0 ? rate + " pps" : "不限");
+
+            receiver = new Thread(() -> {
+                byte[] buffer = new byte[1024];
+                DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+                long highest = -1;
+                while (!socket.isClosed()) {
+                    try {
+                        response.setLength(buffer.length);
+                        socket.receive(response);
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    } catch (IOException e) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    long index = (timestamps ? parseTimestampSequence(buffer, response.getLength())
+                            : parseSequence(buffer, response.getLength())) - seq;
+                    if (index < 0 || index >= pingCount) {
+                        continue;
+                    }
+                    int i = (int) index;
+                    // expire() only runs while the window is full, so overdue replies are timed out here first
+                    if (now - sendTimes[i] >= timeoutNanos && states.compareAndSet(i, PENDING, TIMED_OUT)) {
+                        inFlight.decrementAndGet();
+                    }
+                    if (states.compareAndSet(i, PENDING, REPLIED)) {
+                        int n = received.getAndIncrement();
+                        rtts[n] = now - sendTimes[i];
+                        if (legs != null) {
+                            splitRtt(buffer, toEpochNanos(now), legs, n);
+                        }
+                        inFlight.decrementAndGet();
+                    } else if (states.compareAndSet(i, TIMED_OUT, REPLIED)) {
+                        late.incrementAndGet();
+                    } else {
+                        duplicates.incrementAndGet();
+                        continue;
+                    }
+                    if (i < highest) {
+                        reordered.incrementAndGet();
+                    } else {
+                        highest = i;
+                    }
+                }
+            });
+            receiver.start();
+
+            byte[] payload = new byte[timestamps ? TS_LENGTH : 64];
+            DatagramPacket request = new DatagramPacket(payload, payload.length, host, port);
+            int oldest = 0;
+            long nextSend = System.nanoTime();
+            for (int i = 0; i < pingCount; i++) {
+                // Wait for a window slot, expiring the oldest outstanding pings once they time out
+                while (inFlight.get() >= window) {
+                    oldest = expire(states, sendTimes, inFlight, oldest, i, timeoutNanos);
+                    LockSupport.parkNanos(50_000);
+                }
+                if (interval > 0) {
+                    long wait = nextSend - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextSend += interval;
+                }
+                inFlight.incrementAndGet();
+                sendTimes[i] = System.nanoTime();
+                request.setLength(timestamps ? writeTimestampPayload(payload, seq + i, toEpochNanos(sendTimes[i]))
+                        : writePayload(payload, seq + i, System.currentTimeMillis()));
+                try {
+                    socket.send(request);
+                } catch (IOException e) {
+                    System.out.println("发送失败: " + e.getMessage());
+                }
+            }
+            // Drain: wait until every ping was answered or timed out
+            while (oldest < pingCount) {
+                oldest = expire(states, sendTimes, inFlight, oldest, pingCount, timeoutNanos);
+                if (inFlight.get() == 0) {
+                    break;
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+        // Closing the socket unblocks the receiver, so join it only after the try block
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int ok = received.get();
+        System.out.println("\n" + name + " 的 Ping 统计信息:");
+        System.out.printf("\t数据包: 已发送 = %d，已接收 = %d，丢失 = %d(%d%% 丢失)%n",
+                pingCount, ok, pingCount - ok, (pingCount - ok) * 100 / pingCount);
+        System.out.printf("\t乱序 = %d，重复 = %d，超时后到达 = %d%n", reordered.get(), duplicates.get(), late.get());
+        if (ok == 0) {
+            System.out.println("所有数据包均已丢失，无法计算 RTT 统计信息。");
+            return;
+        }
+        long[] sorted = Arrays.copyOf(rtts, ok);
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long rtt : sorted) {
+            sum += rtt;
+        }
+        System.out.println("往返行程的估计时间(以毫秒为单位):");
+        System.out.printf("\t最短RTT = %.3fms，最长RTT = %.3fms，平均RTT = %.3fms%n",
+                sorted[0] / 1e6, sorted[ok - 1] / 1e6, sum / (double) ok / 1e6);
+        System.out.printf("\tp50 = %.3fms，p90 = %.3fms，p99 = %.3fms，p99.9 = %.3fms%n",
+                percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6,
+                percentile(sorted, 99) / 1e6, percentile(sorted, 99.9) / 1e6);
+        if (legs != null) {
+            printLegs(legs, ok);
+        }
+    }
+
+    /**
+     * Sequential mode with the binary timestamp protocol: each reply carries the server's receive and
+     * transmit times, so the RTT is split into forward delay, server residence and return delay.
+     * Residence needs only the server clock; the one-way legs assume both clocks are synchronized.
+     */
+    private static void runTimestamped(String name, InetAddress host, int port, int pingCount) throws IOException {
+        long[][] legs = new long[3][pingCount];
+        long[] rtts = new long[pingCount];
+        int ok = 0;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(MAX_TIMEOUT);
+            System.out.println("正在 Ping " + name + " (时间戳协议):");
+            final long seq = System.currentTimeMillis();
+            byte[] payload = new byte[TS_LENGTH];
+            byte[] buffer = new byte[1024];
+            DatagramPacket request = new DatagramPacket(payload, payload.length, host, port);
+            DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+            for (int i = 0; i < pingCount; i++) {
+                long start = System.nanoTime();
+                writeTimestampPayload(payload, seq + i, toEpochNanos(start));
+                try {
+                    socket.send(request);
+                    long now;
+                    do {
+                        response.setLength(buffer.length);
+                        socket.receive(response);
+                        now = System.nanoTime();
+                    } while (parseTimestampSequence(buffer, response.getLength()) != seq + i);
+                    rtts[ok] = now - start;
+                    splitRtt(buffer, toEpochNanos(now), legs, ok);
+                    System.out.printf("来自 %s 的回复: 字节=%d 时间=%.3fms 去程=%.3fms 服务端=%.3fms 回程=%.3fms%n",
+                            name, response.getLength(), rtts[ok] / 1e6,
+                            legs[0][ok] / 1e6, legs[1][ok] / 1e6, legs[2][ok] / 1e6);
+                    ok++;
+                } catch (IOException e) {
+                    System.out.println("请求超时。");
+                }
+            }
+        }
+
+        System.out.println("\n" + name + " 的 Ping 统计信息:");
+        System.out.printf("\t数据包: 已发送 = %d，已接收 = %d，丢失 = %d(%d%% 丢失)%n",
+                pingCount, ok, pingCount - ok, (pingCount - ok) * 100 / pingCount);
+        if (ok == 0) {
+            System.out.println("所有数据包均已丢失，无法计算 RTT 统计信息。");
+            return;
+        }
+        long[] sorted = Arrays.copyOf(rtts, ok);
+        Arrays.sort(sorted);
+        System.out.println("往返行程的估计时间(以毫秒为单位):");
+        System.out.printf("\t最短RTT = %.3fms，最长RTT = %.3fms，平均RTT = %.3fms%n",
+                sorted[0] / 1e6, sorted[ok - 1] / 1e6, Arrays.stream(sorted).average().orElse(0) / 1e6);
+        printLegs(legs, ok);
+    }
+
+    // Prints p50/p99/average of each RTT component; one-way legs are only meaningful with synchronized clocks
+    private static void printLegs(long[][] legs, int count) {
+        String[] names = {"去程", "服务端驻留", "回程"};
+        System.out.println("往返时间分解(以毫秒为单位，去程/回程需要两端时钟同步):");
+        for (int k = 0; k < legs.length; k++) {
+            long[] sorted = Arrays.copyOf(legs[k], count);
+            Arrays.sort(sorted);
+            System.out.printf("\t%s: 平均 = %.3fms，p50 = %.3fms，p99 = %.3fms%n", names[k],
+                    Arrays.stream(sorted).average().orElse(0) / 1e6,
+                    percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6);
+        }
+    }
+
+    // Splits a timestamped reply received at clientRx (epoch nanos) into forward, residence and return delays
+    private static void splitRtt(byte[] buf, long clientRx, long[][] legs, int index) {
+        long clientTx = getLong(buf, 16);
+        long serverRx = getLong(buf, 24);
+        long serverTx = getLong(buf, 32);
+        legs[0][index] = serverRx - clientTx;
+        legs[1][index] = serverTx - serverRx;
+        legs[2][index] = clientRx - serverTx;
+    }
+
+    private static long epochNow() {
+        Instant now = Instant.now();
+        return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    private static long toEpochNanos(long nanoTime) {
+        return ANCHOR_EPOCH_NANOS + (nanoTime - ANCHOR_NANO_TIME);
+    }
+
+    // Writes a binary timestamp request into buf, leaving the server timestamps zero, returns the length
+    static int writeTimestampPayload(byte[] buf, long seq, long epochNanos) {
+        putLong(buf, 0, (long) TS_MAGIC << 32 | 1L << 24);
+        putLong(buf, 8, seq);
+        putLong(buf, 16, epochNanos);
+        putLong(buf, 24, 0);
+        putLong(buf, 32, 0);
+        return TS_LENGTH;
+    }
+
+    // Returns the sequence number of an echoed timestamp payload, or -1 if it is not one
+    static long parseTimestampSequence(byte[] buf, int length) {
+        if (length < TS_LENGTH || (int) (getLong(buf, 0) >>> 32) != TS_MAGIC) {
+            return -1;
+        }
+        return getLong(buf, 8);
+    }
+
+    private static void putLong(byte[] buf, int pos, long value) {
+        for (int i = pos + 7; i >= pos; i--) {
+            buf[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] buf, int pos) {
+        long value = 0;
+        for (int i = pos; i < pos + 8; i++) {
+            value = value << 8 | (buf[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int expire(AtomicIntegerArray states, long[] sendTimes, AtomicInteger inFlight,
+                              int oldest, int sent, long timeoutNanos) {
+        long now = System.nanoTime();
+        while (oldest < sent) {
+            if (states.get(oldest) == PENDING) {
+                if (now - sendTimes[oldest] < timeoutNanos) {
+                    break;
+                }
+                if (states.compareAndSet(oldest, PENDING, TIMED_OUT)) {
+                    inFlight.decrementAndGet();
+                }
+            }
+            oldest++;
+        }
+        return oldest;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    // Writes "PingUDP <seq> <millis>\r\n" into buf without allocating, returns the length
+    static int writePayload(byte[] buf, long seq, long millis) {
+        System.arraycopy(TAG, 0, buf, 0, TAG.length);
+        int pos = writeLong(buf, TAG.length, seq);
+        buf[pos++] = ' ';
+        pos = writeLong(buf, pos, millis);
+        buf[pos++] = '\r';
+        buf[pos++] = '\n';
+        return pos;
+    }
+
+    private static int writeLong(byte[] buf, int pos, long value) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    // Returns the sequence number of an echoed payload, or -1 if it is not a PingUDP reply
+    static long parseSequence(byte[] buf, int length) {
+        if (length <= TAG.length) {
+            return -1;
+        }
+        for (int i = 0; i < TAG.length; i++) {
+            if (buf[i] != TAG[i]) {
+                return -1;
+            }
+        }
+        long value = 0;
+        int i = TAG.length;
+        for (; i < length && buf[i] >= '0' && buf[i] <= '9'; i++) {
+            value = value * 10 + (buf[i] - '0');
+        }
+        return i == TAG.length ? -1 : value;
+    }
 }
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator mode of PingClient: simulates many distinct clients, each with its own local socket
+ * (and therefore source port) and its own sequence space, multiplexed through one Selector per thread.
+ * Sends follow an open-loop schedule at the configured aggregate rate; latency is measured from the
+ * intended send time rather than the actual one, so a stalled sender does not hide queueing delay
+ * (coordinated omission correction).
+ */
+public class PingLoadGenerator {
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int WINDOW = 4096; // outstanding sequence numbers tracked per client
+
+    private final InetSocketAddress target;
+    private final int clients;
+    private final int rate;
+    private final int seconds;
+    private final int threads;
+
+    public PingLoadGenerator(InetSocketAddress target, int clients, int rate, int seconds, int threads) {
+        this.target = target;
+        this.clients = clients;
+        this.rate = rate;
+        this.seconds = seconds;
+        // every thread needs at least 1 pps of the aggregate rate
+        this.threads = Math.max(1, Math.min(threads, Math.min(clients, rate)));
+    }
+
+    /**
+     * Per simulated client state. Intended send times are kept in a ring indexed by sequence number.
+     */
+    static final class Client {
+        final DatagramChannel channel;
+        final int localPort;
+        final long[] intended = new long[WINDOW];
+        final long[] actual = new long[WINDOW];
+        final long[] sequences = new long[WINDOW];
+        final Histogram histogram = new Histogram(2);
+        long nextSeq;
+        long sent;
+        long received;
+        long dropped; // writes the local send buffer refused, never reached the network
+        long unreachable; // ICMP port unreachable reported on this client's socket
+
+        Client(DatagramChannel channel) {
+            this.channel = channel;
+            this.localPort = channel.socket().getLocalPort();
+            java.util.Arrays.fill(sequences, -1);
+        }
+    }
+
+    private final class Worker extends Thread {
+        final List<Client> owned = new ArrayList<>();
+        final Histogram corrected = new Histogram(5);
+        final Histogram service = new Histogram(5);
+        final long interval;
+        final Selector selector;
+        long late;
+
+        Worker(int index, int share) throws IOException {
+            super("load-" + index);
+            this.interval = 1_000_000_000L / share;
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer out = ByteBuffer.allocate(64);
+            ByteBuffer in = ByteBuffer.allocate(1024);
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            long next = start;
+            long k = 0;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    // Send everything that is due, even if we are behind schedule
+                    while (next <= now && next < end) {
+                        int slot = (int) (k++ % owned.size());
+                        Client client = owned.get(slot);
+                        long seq = client.nextSeq++;
+                        int ring = (int) (seq & (WINDOW - 1));
+                        client.sequences[ring] = seq;
+                        client.intended[ring] = next;
+                        out.clear();
+                        out.limit(PingClient.writePayload(out.array(), seq, System.currentTimeMillis()));
+                        client.actual[ring] = System.nanoTime();
+                        if (write(client, out)) {
+                            client.sent++;
+                        } else {
+                            client.sequences[ring] = -1;
+                        }
+                        if (client.actual[ring] - next > interval) {
+                            late++;
+                        }
+                        next += interval;
+                    }
+                    if (next >= end && now >= end + TIMEOUT_NANOS) {
+                        break;
+                    }
+                    long wait = (next < end ? next : end + TIMEOUT_NANOS) - now;
+                    if (wait > 1_000_000) {
+                        selector.select(wait / 1_000_000);
+                    } else {
+                        selector.selectNow();
+                    }
+                    now = System.nanoTime();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Client client = (Client) key.attachment();
+                        while (true) {
+                            in.clear();
+                            if (read(client, in) <= 0) {
+                                break;
+                            }
+                            long seq = PingClient.parseSequence(in.array(), in.position());
+                            if (seq < 0) {
+                                continue;
+                            }
+                            int ring = (int) (seq & (WINDOW - 1));
+                            if (client.sequences[ring] != seq || now - client.intended[ring] > TIMEOUT_NANOS) {
+                                continue;
+                            }
+                            client.sequences[ring] = -1;
+                            long latency = now - client.intended[ring];
+                            client.received++;
+                            client.histogram.record(latency);
+                            corrected.record(latency);
+                            service.record(now - client.actual[ring]);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                System.out.println("负载生成失败: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Returns false if the datagram was not handed to the network: the non-blocking channel had no room
+         * in its send buffer, or the socket reported an earlier ICMP port unreachable.
+         */
+        private boolean write(Client client, ByteBuffer out) throws IOException {
+            try {
+                if (client.channel.write(out) > 0) {
+                    return true;
+                }
+                client.dropped++;
+            } catch (PortUnreachableException e) {
+                client.unreachable++;
+            }
+            return false;
+        }
+
+        private int read(Client client, ByteBuffer in) throws IOException {
+            try {
+                return client.channel.read(in);
+            } catch (PortUnreachableException e) {
+                client.unreachable++;
+                return 0;
+            }
+        }
+    }
+
+    public void run(String csv) throws IOException, InterruptedException {
+        List<Worker> workers = new ArrayList<>();
+        List<Client> all = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int owned = clients / threads + (t < clients % threads ? 1 : 0);
+            workers.add(new Worker(t, rate / threads + (t < rate % threads ? 1 : 0)));
+            for (int i = 0; i < owned; i++) {
+                DatagramChannel channel = DatagramChannel.open();
+                channel.bind(null);
+                channel.connect(target);
+                channel.configureBlocking(false);
+                Client client = new Client(channel);
+                channel.register(workers.get(t).selector, SelectionKey.OP_READ, client);
+                workers.get(t).owned.add(client);
+                all.add(client);
+            }
+        }
+        System.out.printf("正在以 %d 个客户端、共 %d pps 压测 %s，持续 %d 秒...%n", clients, rate, target, seconds);
+        for (Worker worker : workers) {
+            worker.start();
+        }
+        Histogram corrected = new Histogram(5);
+        Histogram service = new Histogram(5);
+        long late = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            corrected.add(worker.corrected);
+            service.add(worker.service);
+            late += worker.late;
+            worker.selector.close();
+        }
+        long sent = 0;
+        long received = 0;
+        long dropped = 0;
+        long unreachable = 0;
+        // per-client loss distribution: 0, <=1%, <=5%, <=20%, >20%
+        int[] lossBuckets = new int[5];
+        for (Client client : all) {
+            sent += client.sent;
+            received += client.received;
+            dropped += client.dropped;
+            unreachable += client.unreachable;
+            client.channel.close();
+            double loss = client.sent == 0 ? 0 : (client.sent - client.received) * 100.0 / client.sent;
+            lossBuckets[loss == 0 ? 0 : loss <= 1 ? 1 : loss <= 5 ? 2 : loss <= 20 ? 3 : 4]++;
+        }
+
+        System.out.println("\n汇总统计:");
+        System.out.printf("\t已发送 = %d，已接收 = %d，丢失 = %d(%.3f%% 丢失)，实际速率 = %.0f pps，发送滞后 = %d%n",
+                sent, received, sent - received, sent == 0 ? 0 : (sent - received) * 100.0 / sent,
+                sent / (double) seconds, late);
+        System.out.printf("\t本地发送缓冲区满未发出 = %d，端口不可达 = %d%n", dropped, unreachable);
+        System.out.println("\t延迟(按计划发送时间计算，已校正协同遗漏): " + corrected.summary());
+        System.out.println("\t延迟(按实际发送时间计算): " + service.summary());
+        System.out.printf("\t各客户端丢包率分布: 无丢包 = %d，≤1%% = %d，≤5%% = %d，≤20%% = %d，>20%% = %d%n",
+                lossBuckets[0], lossBuckets[1], lossBuckets[2], lossBuckets[3], lossBuckets[4]);
+
+        if (csv != null) {
+            try (PrintWriter writer = new PrintWriter(csv)) {
+                writer.println("client,local_port,sent,received,loss_pct,p50_ms,p90_ms,p99_ms,max_ms,send_dropped,unreachable");
+                for (int i = 0; i < all.size(); i++) {
+                    Client c = all.get(i);
+                    writer.printf("%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d%n", i, c.localPort, c.sent, c.received,
+                            c.sent == 0 ? 0 : (c.sent - c.received) * 100.0 / c.sent,
+                            c.histogram.percentile(50) / 1e6, c.histogram.percentile(90) / 1e6,
+                            c.histogram.percentile(99) / 1e6, c.histogram.max() / 1e6, c.dropped, c.unreachable);
+                }
+            }
+            System.out.println("各客户端统计已写入 " + csv);
+        }
+    }
+
+    /**
+     * Log-linear histogram: every power of two is split into 2^precision linear sub-buckets,
+     * giving a relative error of about 1 / 2^precision with a fixed, small footprint.
+     */
+    static final class Histogram {
+        private final int precision;
+        private final long[] counts;
+        private long total;
+        private long max;
+
+        Histogram(int precision) {
+            this.precision = precision;
+            this.counts = new long[64 << precision];
+        }
+
+        void record(long value) {
+            long v = Math.max(1, value);
+            counts[index(v)]++;
+            total++;
+            max = Math.max(max, v);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        private int index(long v) {
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = exp >= precision ? (int) (v >>> (exp - precision)) : (int) (v << (precision - exp));
+            return (exp << precision) + (sub & ((1 << precision) - 1));
+        }
+
+        private long upperValue(int index) {
+            int exp = index >>> precision;
+            long sub = (index & ((1 << precision) - 1)) + (1L << precision) + 1;
+            return exp >= precision ? (sub << (exp - precision)) - 1 : sub >>> (precision - exp);
+        }
+
+        long percentile(double p) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p / 100 * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(upperValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        long max() {
+            return max;
+        }
+
+        String summary() {
+            if (total == 0) {
+                return "无数据";
+            }
+            return String.format("p50 = %.3fms，p90 = %.3fms，p99 = %.3fms，p99.9 = %.3fms，最大 = %.3fms (样本 %d)",
+                    percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6,
+                    percentile(99.9) / 1e6, max / 1e6, total);
+        }
+    }
+}
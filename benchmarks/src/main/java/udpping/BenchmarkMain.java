@@ -0,0 +1,18 @@
+package udpping;
+
+import java.util.Arrays;
+
+/**
+ * benchmarks.jar 的入口。未指定分析器时默认附带 GC 分析器，以便同时报告每次操作的分配量。
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            String[] withGc = Arrays.copyOf(args, args.length + 2);
+            withGc[args.length] = "-prof";
+            withGc[args.length + 1] = "gc";
+            args = withGc;
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,85 @@
+package udpping;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 接收线程把数据包交给工作线程的开销。handoff 每次调用提交一批空任务并等待全部执行完，衡量吞吐；
+ * latency 每次只提交一个任务并等待其执行，以采样模式运行，输出单次交接耗时的 p50/p99/p99.9，
+ * 包含 PARK 策略下唤醒休眠工作线程的代价。ring-* 为交接环及其等待策略。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandoffBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"fixed", "admission", "ring-spin", "ring-yield", "ring-park"})
+    public String executor;
+
+    @Param({"4"})
+    public int threads;
+
+    private Executor target;
+    private final AtomicInteger done = new AtomicInteger();
+    private final Statistic source = new Statistic("127.0.0.1");
+    private Runnable work;
+
+    @Setup
+    public void setup() {
+        if (executor.equals("fixed")) {
+            target = Executors.newFixedThreadPool(threads);
+        } else if (executor.startsWith("ring-")) {
+            HandoffRing.WaitStrategy strategy = HandoffRing.WaitStrategy.parse(executor.substring("ring-".length()));
+            target = new HandoffRing(threads, 8192, strategy, 32, slot -> { }, stat -> { }, System.err::println);
+        } else {
+            target = new AdmissionExecutor(threads, 8192, AdmissionExecutor.Policy.NEWEST, stat -> { });
+        }
+        work = done::incrementAndGet;
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (target instanceof ExecutorService) {
+            ((ExecutorService) target).shutdownNow();
+        } else {
+            HandoffRing ring = (HandoffRing) target;
+            ring.shutdownNow();
+            ring.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int handoff() {
+        done.set(0);
+        for (int i = 0; i < BATCH; i++) {
+            target.execute(new PacketTask(source, work, null));
+        }
+        while (done.get() + source.getShedCount() < BATCH) {
+            LockSupport.parkNanos(1000);
+        }
+        return done.get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int latency() {
+        done.set(0);
+        long shed = source.getShedCount();
+        target.execute(new PacketTask(source, work, null));
+        while (done.get() == 0 && source.getShedCount() == shed) {
+            Thread.onSpinWait();
+        }
+        return done.get();
+    }
+}
@@ -0,0 +1,56 @@
+package udpping;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个数据包的界面日志开销：旧实现在工作线程上拼接完整消息字符串，新实现只把原始字段拷贝进环形缓冲区。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogBenchmark {
+    private final LogRing ring = new LogRing(1024);
+    private final PingPayload payload = new PingPayload();
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+    private byte[] data;
+    private ByteBuffer buffer;
+    private int messageNumber;
+
+    @Setup
+    public void setup() {
+        data = new byte[1024];
+        byte[] content = "PingUDP 1700000000123 1700000000456\r\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(content, 0, data, 0, content.length);
+        buffer = ByteBuffer.wrap(data, 0, content.length);
+        payload.parse(buffer);
+    }
+
+    @Benchmark
+    public String messageLegacy() {
+        String headerInfo = "源端口: " + 40000 + ", 目标端口: " + 8000
+                + ", 数据长度: " + buffer.remaining() + ", 源地址: " + address.getHostAddress() + ", 数据偏移: " + 0;
+        return "第 " + messageNumber++ + " 条消息\n收到来自 " + address.getHostAddress()
+                + " 地址的消息\n头部信息为："
+                + headerInfo + "\n有效负载为：" + payload + "\n实际数据内容：" + Arrays.toString(data) + "\n";
+    }
+
+    @Benchmark
+    public int messageRing() {
+        LogEntry entry = ring.claim();
+        if (entry != null) {
+            entry.setMessage(messageNumber++, address, 40000, 8000, buffer, payload);
+            ring.publish(entry);
+        }
+        // 模拟界面线程取走日志，但不格式化，使缓冲区不会填满
+        return ring.drain(e -> { }, 1);
+    }
+}
@@ -0,0 +1,375 @@
+package udpping;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端回环压测。每组参数启动一个独立的无界面 UDPPingServer 进程，用开环定速客户端驱动，
+ * 记录实际吞吐、丢包和延迟直方图，结果写入 CSV/JSON，便于在不同提交之间比较。
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar udpping.LoopbackBenchmark \
+ *     --rates=1000,20000 --sizes=64,512 --threads=4,64 --loss=0,10 --delay=0 \
+ *     --engines=socket,nio --duration=5 --out=results.csv --json=results.json
+ * </pre>
+ * 其余服务端参数（如 --executor=ring --wait=yield）可通过 --server-args 原样传给服务端进程，多个参数用空格分隔：
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar udpping.LoopbackBenchmark "--server-args=--executor=ring --wait=spin"
+ * </pre>
+ */
+public class LoopbackBenchmark {
+    private static final int RING = 1 << 20;
+    private static final byte[] TAG = "PingUDP ".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, String> params = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        LoopbackBenchmark benchmark = new LoopbackBenchmark();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            benchmark.params.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        benchmark.run();
+    }
+
+    private String param(String key, String defaultValue) {
+        return params.getOrDefault(key, defaultValue);
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private void run() throws Exception {
+        int[] rates = ints(param("rates", "1000,10000"));
+        int[] sizes = ints(param("sizes", "64"));
+        int[] threads = ints(param("threads", "64"));
+        int[] losses = ints(param("loss", "0"));
+        int[] delays = ints(param("delay", "0"));
+        String[] engines = param("engines", "socket").split(",");
+        int duration = Integer.parseInt(param("duration", "5"));
+        int warmup = Integer.parseInt(param("warmup", "1"));
+        int port = Integer.parseInt(param("port", "18000"));
+        String label = param("label", gitRevision());
+        File csv = new File(param("out", "loopback-results.csv"));
+        String json = params.get("json");
+        String serverArgs = param("server-args", "").trim();
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String engine : engines) {
+            for (int threadCount : threads) {
+                for (int loss : losses) {
+                    for (int delay : delays) {
+                        for (int size : sizes) {
+                            for (int rate : rates) {
+                                Map<String, Object> row = new LinkedHashMap<>();
+                                row.put("label", label);
+                                row.put("engine", engine);
+                                row.put("server_args", serverArgs);
+                                row.put("threads", threadCount);
+                                row.put("loss", loss);
+                                row.put("delay", delay);
+                                row.put("size", size);
+                                row.put("rate", rate);
+                                row.put("duration", duration);
+                                System.out.println("运行 " + row);
+                                Process server = startServer(port, threadCount, engine, loss, delay, serverArgs);
+                                try {
+                                    awaitReady(port);
+                                    drive(port, rate, size, warmup, delay, null);
+                                    drive(port, rate, size, duration, delay, row);
+                                } finally {
+                                    server.destroy();
+                                    server.waitFor(5, TimeUnit.SECONDS);
+                                    server.destroyForcibly();
+                                }
+                                System.out.println("结果 " + row);
+                                results.add(row);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        writeCsv(csv, results);
+        if (json != null) {
+            writeJson(new File(json), results);
+        }
+    }
+
+    private Process startServer(int port, int threads, String engine, int loss, int delay, String serverArgs)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("udpping.UDPPingServer");
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(threads));
+        command.add("--headless");
+        command.add("--engine=" + engine);
+        if (loss > 0) {
+            command.add("--loss=" + loss);
+        }
+        if (delay != 0) {
+            command.add("--delay=" + delay);
+        }
+        if (!serverArgs.isEmpty()) {
+            command.addAll(Arrays.asList(serverArgs.split("\\s+")));
+        }
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private void awaitReady(int port) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(new InetSocketAddress("127.0.0.1", port));
+            channel.socket().setSoTimeout(100);
+            ByteBuffer out = ByteBuffer.allocate(64);
+            ByteBuffer in = ByteBuffer.allocate(1024);
+            while (System.nanoTime() < deadline) {
+                out.clear();
+                out.limit(writePayload(out.array(), 0, 0));
+                try {
+                    channel.write(out);
+                    in.clear();
+                    // 只有通过 socket 适配器读取才会应用 SoTimeout
+                    DatagramPacket packet = new DatagramPacket(in.array(), in.capacity());
+                    channel.socket().receive(packet);
+                    return;
+                } catch (SocketTimeoutException | PortUnreachableException e) {
+                    Thread.sleep(50);
+                }
+            }
+        }
+        throw new IOException("服务端在 10 秒内没有响应");
+    }
+
+    /**
+     * 以开环方式按计划时间发送，延迟从计划发送时间开始计算，避免发送端停顿掩盖排队延迟。
+     * row 为 null 时只做预热，不记录结果。
+     */
+    private void drive(int port, int rate, int size, int seconds, int delay, Map<String, Object> row)
+            throws IOException, InterruptedException {
+        long[] intended = new long[RING];
+        // 序号数组的 release/acquire 保证接收线程能看到先写入的计划发送时间
+        AtomicLongArray sequences = new AtomicLongArray(RING);
+        for (int i = 0; i < RING; i++) {
+            sequences.lazySet(i, -1);
+        }
+        LatencyHistogram histogram = new LatencyHistogram(7);
+        AtomicLong received = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        long interval = 1_000_000_000L / rate;
+        long sent = 0;
+
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(new InetSocketAddress("127.0.0.1", port));
+            channel.socket().setSoTimeout(100);
+            Thread receiver = new Thread(() -> {
+                byte[] buffer = new byte[Math.max(size, 64) + 64];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                while (!done.get()) {
+                    try {
+                        packet.setLength(buffer.length);
+                        channel.socket().receive(packet);
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    } catch (IOException e) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    long seq = parseSequence(buffer, packet.getLength());
+                    if (seq < 0) {
+                        continue;
+                    }
+                    int slot = (int) (seq & (RING - 1));
+                    if (sequences.compareAndSet(slot, seq, -1)) {
+                        histogram.record(now - intended[slot]);
+                        received.incrementAndGet();
+                    }
+                }
+            }, "loopback-receiver");
+            receiver.start();
+
+            ByteBuffer out = ByteBuffer.allocate(Math.max(size, 64));
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            long next = start;
+            while (next < end) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int slot = (int) (sent & (RING - 1));
+                intended[slot] = next;
+                sequences.lazySet(slot, sent);
+                out.clear();
+                out.limit(padTo(out.array(), writePayload(out.array(), sent, System.currentTimeMillis()), size));
+                channel.write(out);
+                sent++;
+                next += interval;
+            }
+            // 等待延迟与在途的响应
+            long maxDelay = delay < 0 ? 1000 : delay;
+            Thread.sleep(1000 + maxDelay);
+            done.set(true);
+            receiver.join();
+        }
+
+        if (row == null) {
+            return;
+        }
+        long ok = received.get();
+        row.put("sent", sent);
+        row.put("received", ok);
+        row.put("loss_pct", String.format("%.3f", sent == 0 ? 0.0 : (sent - ok) * 100.0 / sent));
+        row.put("throughput_pps", String.format("%.1f", ok / (double) seconds));
+        for (double p : new double[]{50, 90, 99, 99.9, 99.99}) {
+            row.put("p" + (p == (long) p ? String.valueOf((long) p) : String.valueOf(p)) + "_us",
+                    String.format("%.1f", histogram.percentile(p) / 1e3));
+        }
+        row.put("max_us", String.format("%.1f", histogram.getMax() / 1e3));
+    }
+
+    private static int writePayload(byte[] buf, long seq, long millis) {
+        System.arraycopy(TAG, 0, buf, 0, TAG.length);
+        int pos = writeLong(buf, TAG.length, seq);
+        buf[pos++] = ' ';
+        pos = writeLong(buf, pos, millis);
+        buf[pos++] = '\r';
+        buf[pos++] = '\n';
+        return pos;
+    }
+
+    /**
+     * 服务端解析器允许时间戳后出现空白，用空格把负载填充到目标长度。
+     */
+    private static int padTo(byte[] buf, int length, int size) {
+        if (length >= size) {
+            return length;
+        }
+        buf[length - 2] = ' ';
+        buf[length - 1] = ' ';
+        Arrays.fill(buf, length, size - 2, (byte) ' ');
+        buf[size - 2] = '\r';
+        buf[size - 1] = '\n';
+        return size;
+    }
+
+    private static int writeLong(byte[] buf, int pos, long value) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private static long parseSequence(byte[] buf, int length) {
+        if (length <= TAG.length) {
+            return -1;
+        }
+        for (int i = 0; i < TAG.length; i++) {
+            if (buf[i] != TAG[i]) {
+                return -1;
+            }
+        }
+        long value = 0;
+        int i = TAG.length;
+        for (; i < length && buf[i] >= '0' && buf[i] <= '9'; i++) {
+            value = value * 10 + (buf[i] - '0');
+        }
+        return i == TAG.length ? -1 : value;
+    }
+
+    private static String gitRevision() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                return git.waitFor() == 0 && line != null ? line.trim() : "unknown";
+            }
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private static void writeCsv(File file, List<Map<String, Object>> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            writer.println(String.join(",", rows.get(0).keySet()));
+            for (Map<String, Object> row : rows) {
+                List<String> values = new ArrayList<>();
+                row.values().forEach(v -> values.add(csvField(String.valueOf(v))));
+                writer.println(String.join(",", values));
+            }
+        }
+        System.out.println("结果已写入 " + file);
+    }
+
+    /**
+     * 含逗号、引号或换行的字段（如带多个参数的 server_args）按 RFC 4180 加引号，内部引号双写。
+     */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeJson(File file, List<Map<String, Object>> rows) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            writer.println("[");
+            for (int i = 0; i < rows.size(); i++) {
+                StringBuilder line = new StringBuilder("  {");
+                boolean first = true;
+                for (Map.Entry<String, Object> e : rows.get(i).entrySet()) {
+                    if (!first) {
+                        line.append(", ");
+                    }
+                    first = false;
+                    Object v = e.getValue();
+                    boolean numeric = v instanceof Number || (v instanceof String && ((String) v).matches("-?\\d+(\\.\\d+)?"));
+                    line.append('"').append(e.getKey()).append("\": ");
+                    line.append(numeric ? v.toString() : "\"" + v.toString().replace("\"", "\\\"") + "\"");
+                }
+                line.append(i == rows.size() - 1 ? "}" : "},");
+                writer.println(line);
+            }
+            writer.println("]");
+        }
+        System.out.println("结果已写入 " + file);
+    }
+}
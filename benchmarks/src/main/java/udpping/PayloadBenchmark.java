@@ -0,0 +1,73 @@
+package udpping;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 负载解析与响应构造：旧的 String/split/HashMap 实现与字节级享元解析、原样回显的对比。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadBenchmark {
+    private byte[] data;
+    private ByteBuffer direct;
+    private DatagramPacket packet;
+    private final PingPayload payload = new PingPayload();
+
+    @Setup
+    public void setup() throws Exception {
+        data = new byte[1024];
+        byte[] content = "PingUDP 1700000000123 1700000000456\r\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(content, 0, data, 0, content.length);
+        direct = ByteBuffer.allocateDirect(1024);
+        direct.put(content).flip();
+        packet = new DatagramPacket(data, 0, content.length, InetAddress.getLoopbackAddress(), 40000);
+    }
+
+    @Benchmark
+    public Map<String, String> parseLegacy() {
+        String content = new String(packet.getData(), packet.getOffset(), packet.getLength());
+        Map<String, String> map = new HashMap<>();
+        String[] items = content.split(" ");
+        if (items.length >= 3) {
+            map.put("PingUDP", items[0]);
+            map.put("SequenceNumber", items[1]);
+            map.put("TimeStamp", items[2]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public boolean parseFlyweightArray() {
+        return payload.parse(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+
+    @Benchmark
+    public boolean parseFlyweightDirect() {
+        return payload.parse(direct);
+    }
+
+    @Benchmark
+    public DatagramPacket replyLegacy() {
+        String content = new String(packet.getData(), packet.getOffset(), packet.getLength());
+        byte[] responseBytes = content.getBytes();
+        return new DatagramPacket(responseBytes, responseBytes.length, packet.getAddress(), packet.getPort());
+    }
+
+    @Benchmark
+    public DatagramPacket replyEcho() {
+        payload.parse(packet.getData(), packet.getOffset(), packet.getLength());
+        return packet;
+    }
+}
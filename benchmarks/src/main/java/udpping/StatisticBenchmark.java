@@ -0,0 +1,68 @@
+package udpping;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按来源统计的每包开销，与服务端热路径一致：StatisticRegistry 查找、recordArrival（LongAdder 计数与抖动直方图）、
+ * recordProcessing（处理耗时直方图）以及界面表格的脏标记。
+ * 1 个来源对应所有线程写同一个热门 IP，4096 个来源超过默认上限 1024，多出的来源落入“其他”。
+ * 单线程与全部核心并发两种竞争程度，需要其他线程数时使用 -t 覆盖。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatisticBenchmark {
+    private static final int PAYLOAD_LENGTH = 64;
+
+    @Param({"1", "16", "4096"})
+    public int ipCount;
+
+    private InetAddress[] addresses;
+    private StatisticRegistry registry;
+    private StatsTableModel model;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        addresses = new InetAddress[ipCount];
+        for (int i = 0; i < ipCount; i++) {
+            addresses[i] = InetAddress.getByAddress(new byte[]{10, (byte) (i >> 16), (byte) (i >> 8), (byte) i});
+        }
+        registry = new StatisticRegistry(1024, 300, TimeUnit.SECONDS);
+        model = new StatsTableModel();
+    }
+
+    private Statistic update(Cursor cursor) {
+        int n = cursor.next++;
+        Statistic stat = registry.get(addresses[n % addresses.length]);
+        long now = System.nanoTime();
+        stat.recordArrival(PAYLOAD_LENGTH, now);
+        // 处理耗时在几微秒到几百微秒之间变化，覆盖直方图的多个桶
+        stat.recordProcessing(1000L << (n & 7));
+        model.markDirty(stat);
+        return stat;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Statistic singleThread(Cursor cursor) {
+        return update(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Statistic allThreads(Cursor cursor) {
+        return update(cursor);
+    }
+}
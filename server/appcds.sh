@@ -0,0 +1,23 @@
+#!/bin/sh
+# 以无界面模式启动服务端，并使用 AppCDS 归档缩短启动时间。
+# 首次运行（或服务端 jar 更新后）先进行一次训练：服务端收到 SIGTERM 退出时把已加载的类写入归档，
+# 之后的启动直接映射归档，省去类的解析和校验。
+#
+#   server/appcds.sh --config=server.properties
+#
+# 需要 JDK 13 及以上（动态归档）；归档与 JDK 版本和 jar 绑定，任一变化后删除归档即可重新训练。
+set -e
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIR/target/udp-ping-server-1.0-SNAPSHOT.jar"
+ARCHIVE="${UDPPING_CDS_ARCHIVE:-$DIR/target/udp-ping-server.jsa}"
+
+if [ ! -f "$ARCHIVE" ]; then
+    echo "训练 AppCDS 归档: $ARCHIVE"
+    java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$JAR" --headless "$@" &
+    PID=$!
+    sleep "${UDPPING_CDS_TRAIN_SECONDS:-3}"
+    kill -TERM "$PID"
+    wait "$PID" || true
+fi
+
+exec java -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -jar "$JAR" --headless "$@"
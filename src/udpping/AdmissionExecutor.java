@@ -0,0 +1,143 @@
+package udpping;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 有界准入队列的线程池。队列满时按策略丢弃数据包，而不是无限堆积直到内存耗尽。
+ * <ul>
+ *     <li>NEWEST：丢弃新到达的数据包</li>
+ *     <li>OLDEST：丢弃队列中最早的数据包，为新数据包腾出位置</li>
+ *     <li>FAIR：新数据包来源未超过公平份额时，从超额来源中丢弃一个排队的数据包，否则丢弃新数据包</li>
+ * </ul>
+ */
+public class AdmissionExecutor extends ThreadPoolExecutor implements PacketExecutor {
+    public enum Policy {
+        NEWEST, OLDEST, FAIR;
+
+        public static Policy parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final int capacity;
+    private final Policy policy;
+    private final Consumer<Statistic> shedListener;
+    private final AtomicInteger activeSources = new AtomicInteger();
+
+    public AdmissionExecutor(int threads, int capacity, Policy policy, Consumer<Statistic> shedListener) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity));
+        this.capacity = capacity;
+        this.policy = policy;
+        this.shedListener = shedListener;
+        setRejectedExecutionHandler(new Shedder());
+        prestartAllCoreThreads();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof PacketTask) {
+            onQueued(((PacketTask) command).getSource());
+        }
+        super.execute(command);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        if (r instanceof PacketTask) {
+            onDequeued(((PacketTask) r).getSource());
+        }
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isBlockingCheap() {
+        return false;
+    }
+
+    private void onQueued(Statistic source) {
+        if (source.incrementQueued() == 1) {
+            activeSources.incrementAndGet();
+        }
+    }
+
+    private void onDequeued(Statistic source) {
+        if (source.decrementQueued() == 0) {
+            activeSources.decrementAndGet();
+        }
+    }
+
+    private int fairShare() {
+        return Math.max(1, capacity / Math.max(1, activeSources.get()));
+    }
+
+    private void shed(PacketTask task) {
+        onDequeued(task.getSource());
+        task.discard();
+        if (!isShutdown()) {
+            task.getSource().incrementShedCount();
+            shedListener.accept(task.getSource());
+        }
+    }
+
+    private PacketTask findOverShare(int share) {
+        Iterator<Runnable> it = getQueue().iterator();
+        while (it.hasNext()) {
+            Runnable r = it.next();
+            if (r instanceof PacketTask && ((PacketTask) r).getSource().getQueued() > share) {
+                return (PacketTask) r;
+            }
+        }
+        return null;
+    }
+
+    private class Shedder implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (!(r instanceof PacketTask)) {
+                return;
+            }
+            PacketTask task = (PacketTask) r;
+            if (!isShutdown()) {
+                if (policy == Policy.OLDEST) {
+                    Runnable oldest = getQueue().poll();
+                    if (oldest instanceof PacketTask) {
+                        shed((PacketTask) oldest);
+                    }
+                    if (getQueue().offer(task)) {
+                        return;
+                    }
+                } else if (policy == Policy.FAIR) {
+                    // 只有在新数据包的来源没有超额时才去扫描队列，洪泛来源的数据包直接丢弃
+                    int share = fairShare();
+                    if (task.getSource().getQueued() <= share) {
+                        PacketTask victim = findOverShare(share);
+                        if (victim != null && getQueue().remove(victim)) {
+                            shed(victim);
+                            if (getQueue().offer(task)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+            shed(task);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package udpping;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定数量的直接缓冲区池，发送响应后归还复用。
+ * 池耗尽时临时分配堆缓冲区，不阻塞接收线程；堆缓冲区归还时直接丢弃。
+ */
+public class BufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+    private final AtomicLong misses = new AtomicLong();
+
+    public BufferPool(int poolSize, int bufferSize) {
+        this.free = new ArrayBlockingQueue<>(poolSize);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < poolSize; i++) {
+            free.offer(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocate(bufferSize);
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            free.offer(buffer);
+        }
+    }
+
+    public int available() {
+        return free.size();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,83 @@
+package udpping;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * 监视配置文件，文件被修改后重新加载并套用到 ServerSettings。
+ * port、ports、loss、delay 与网络损伤配置（impair.*）支持热更新，重新加载后以文件内容为准；其余参数需要重启生效。
+ * ports 只在 selector 引擎下生效，见 {@link MultiPortListener}。
+ */
+public class ConfigWatcher implements Runnable {
+    private final Path file;
+    private final ServerSettings settings;
+    private final WatchService watchService;
+
+    public ConfigWatcher(Path file, ServerSettings settings) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.settings = settings;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        // WatchService 只能监视目录，编辑器保存时常会替换文件，因此同时关注创建事件
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+    }
+
+    public void start() {
+        Thread thread = new Thread(this, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path && file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    // 一次保存可能触发多个事件，稍等片刻让写入完成后只加载一次
+                    Thread.sleep(50);
+                    for (WatchKey extra = watchService.poll(); extra != null; extra = watchService.poll()) {
+                        extra.pollEvents();
+                        extra.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 已关闭
+        }
+    }
+
+    private void reload() {
+        try {
+            settings.apply(ServerOptions.loadProperties(file));
+            System.out.println("已重新加载配置: 端口 " + settings.getPort()
+                    + ", 丢失 " + (settings.getLoss() ? settings.getLossRate() + "%" : "关闭")
+                    + ", 延迟 " + (settings.getDelay() ? settings.getDelayTime() + " ms" : "关闭"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("配置文件无效，保留原设置: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
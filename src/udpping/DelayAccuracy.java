@@ -0,0 +1,34 @@
+package udpping;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录延迟响应的实际发送时间与计划发送时间之间的偏差。
+ */
+public class DelayAccuracy {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalLateness = new LongAdder();
+    private final AtomicLong maxLateness = new AtomicLong();
+
+    public void record(long latenessNanos) {
+        count.increment();
+        totalLateness.add(latenessNanos);
+        if (latenessNanos > maxLateness.get()) {
+            maxLateness.accumulateAndGet(latenessNanos, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getAverageLatenessMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalLateness.sum() / (double) n / 1_000_000;
+    }
+
+    public double getMaxLatenessMillis() {
+        return maxLateness.get() / 1_000_000.0;
+    }
+}
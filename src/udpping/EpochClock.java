@@ -0,0 +1,38 @@
+package udpping;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 System.nanoTime 换算为纪元纳秒，用于二进制协议中的服务端时间戳。以 Instant.now() 为锚点、
+ * 之后只用单调时钟推算，热路径上不读取系统时间；定期调用 {@link #calibrate()} 重新取锚点，
+ * 使长时间运行时单调时钟与经 NTP 校准的系统时间之间的漂移不会累积。
+ */
+public class EpochClock {
+    private static final class Anchor {
+        final long epochNanos;
+        final long nanoTime;
+
+        Anchor(long epochNanos, long nanoTime) {
+            this.epochNanos = epochNanos;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    private volatile Anchor anchor;
+
+    public EpochClock() {
+        calibrate();
+    }
+
+    public void calibrate() {
+        Instant now = Instant.now();
+        long nanoTime = System.nanoTime();
+        anchor = new Anchor(TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano(), nanoTime);
+    }
+
+    public long toEpochNanos(long nanoTime) {
+        Anchor current = anchor;
+        return current.epochNanos + (nanoTime - current.nanoTime);
+    }
+}
@@ -1,3 +1,5 @@
+package udpping;
+
 import javax.swing.JOptionPane;
 
 public class ErrorDialog {
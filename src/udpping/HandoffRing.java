@@ -0,0 +1,294 @@
+package udpping;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 接收线程到工作线程的无锁交接环（Vyukov 有界多生产者多消费者队列），槽位预先分配并复用，
+ * 交接数据包时不创建 lambda，也不经过带锁的阻塞队列。工作线程一次 CAS 认领一批连续的槽位批量处理，
+ * 空闲时按等待策略自旋、让出或休眠，休眠的工作线程由生产者发布时唤醒。环满时丢弃新数据包并计入过载丢弃。
+ * <p>
+ * 生产者可以是多个接收线程和时间轮线程；延迟的数据包仍以 PacketTask 的形式经 {@link #execute(Runnable)} 交接。
+ * 容量向上取整为 2 的幂。
+ */
+public class HandoffRing implements PacketExecutor {
+    /**
+     * SPIN 一直自旋，YIELD 自旋后反复让出 CPU，二者空闲时都占满 CPU，但发布后无需唤醒；
+     * PARK 自旋、让出一小段时间后无限期休眠，空闲时不占 CPU，生产者发布时需要唤醒一个休眠的线程。
+     */
+    public enum WaitStrategy {
+        SPIN, YIELD, PARK;
+
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 200;
+
+        public static WaitStrategy parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+
+        /**
+         * idleCount 为连续空转的次数，让出和休眠策略都先自旋一小段时间再退让。parked 只在 PARK 策略下使用。
+         */
+        void idle(int idleCount, ParkedWorkers parked) {
+            if (this == SPIN || idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (this == YIELD || idleCount < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                parked.park();
+            }
+        }
+
+        /**
+         * 需要唤醒休眠消费者的策略返回新的 ParkedWorkers，其余返回 null。
+         */
+        ParkedWorkers newParkedWorkers(BooleanSupplier ready) {
+            return this == PARK ? new ParkedWorkers(ready) : null;
+        }
+    }
+
+    private final PacketSlot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicInteger busy = new AtomicInteger();
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final Consumer<PacketSlot> handler;
+    private final Consumer<Statistic> shedListener;
+    private final Consumer<String> errors;
+    private final ParkedWorkers parked;
+    private final Thread[] workers;
+    private volatile boolean stopped;
+
+    /**
+     * errors 用于报告处理数据包时抛出的异常。
+     */
+    public HandoffRing(int threads, int capacity, WaitStrategy waitStrategy, int batchSize,
+                       Consumer<PacketSlot> handler, Consumer<Statistic> shedListener, Consumer<String> errors) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new PacketSlot[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new PacketSlot();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.batchSize = Math.max(1, Math.min(batchSize, size));
+        this.handler = handler;
+        this.shedListener = shedListener;
+        this.errors = errors;
+        this.parked = waitStrategy.newParkedWorkers(() -> stopped || hasWork());
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "handoff-worker-" + i);
+            workers[i].start();
+        }
+    }
+
+    private PacketSlot claim() {
+        while (true) {
+            long pos = tail.get();
+            long diff = sequences.get((int) (pos & mask)) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    PacketSlot slot = slots[(int) (pos & mask)];
+                    slot.sequence = pos;
+                    return slot;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    private void publish(PacketSlot slot) {
+        sequences.lazySet((int) (slot.sequence & mask), slot.sequence + 1);
+        if (parked != null) {
+            parked.wakeOne();
+        }
+    }
+
+    private boolean hasWork() {
+        long pos = head.get();
+        return sequences.get((int) (pos & mask)) == pos + 1;
+    }
+
+    /**
+     * 交接阻塞 socket 模式的数据包。返回可供下一次接收复用的 DatagramPacket：
+     * 成功时是槽位中已处理完毕的旧包（可能为 null），环满时数据包被丢弃，原样返回。
+     */
+    public DatagramPacket offer(Statistic source, DatagramSocket socket, DatagramPacket packet, long start,
+                                int copies, PacketLifecycleEvent trace) {
+        PacketSlot slot = claim();
+        if (slot == null) {
+            shed(source, trace);
+            return packet;
+        }
+        DatagramPacket previous = slot.setPacket(source, socket, packet, start, copies, trace);
+        publish(slot);
+        return previous;
+    }
+
+    /**
+     * 交接 NIO 模式的数据包。环满时返回 false，缓冲区由调用方归还。
+     */
+    public boolean offer(Statistic source, DatagramChannel channel, InetSocketAddress address, ByteBuffer buffer,
+                         long start, int copies, PacketLifecycleEvent trace) {
+        PacketSlot slot = claim();
+        if (slot == null) {
+            shed(source, trace);
+            return false;
+        }
+        slot.setBuffer(source, channel, address, buffer, start, copies, trace);
+        publish(slot);
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        PacketSlot slot = stopped ? null : claim();
+        if (slot == null) {
+            if (command instanceof PacketTask) {
+                PacketTask task = (PacketTask) command;
+                task.discard();
+                shed(task.getSource());
+            }
+            return;
+        }
+        slot.setTask(command);
+        publish(slot);
+    }
+
+    private void shed(Statistic source) {
+        if (!stopped) {
+            source.incrementShedCount();
+            shedListener.accept(source);
+        }
+    }
+
+    private void shed(Statistic source, PacketLifecycleEvent trace) {
+        shed(source);
+        if (trace != null) {
+            trace.finish(PacketJournal.Verdict.SHED, System.nanoTime());
+        }
+    }
+
+    private void work() {
+        int idle = 0;
+        while (!stopped) {
+            if (drain() > 0) {
+                idle = 0;
+            } else {
+                waitStrategy.idle(idle++, parked);
+            }
+        }
+    }
+
+    /**
+     * 用一次 CAS 认领从 head 开始最多 batchSize 个已发布的连续槽位，依次处理后逐个归还。
+     */
+    private int drain() {
+        long pos;
+        int count;
+        while (true) {
+            pos = head.get();
+            long diff = sequences.get((int) (pos & mask)) - (pos + 1);
+            if (diff < 0) {
+                return 0;
+            }
+            if (diff > 0) {
+                continue;
+            }
+            count = 1;
+            while (count < batchSize && sequences.get((int) ((pos + count) & mask)) == pos + count + 1) {
+                count++;
+            }
+            if (head.compareAndSet(pos, pos + count)) {
+                break;
+            }
+        }
+        busy.incrementAndGet();
+        try {
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((pos + i) & mask);
+                PacketSlot slot = slots[index];
+                try {
+                    if (slot.getTask() != null) {
+                        slot.getTask().run();
+                    } else {
+                        handler.accept(slot);
+                    }
+                } catch (RuntimeException e) {
+                    errors.accept("处理数据包错误: " + e.getMessage());
+                } finally {
+                    slot.clear();
+                    sequences.lazySet(index, pos + i + slots.length);
+                }
+            }
+        } finally {
+            busy.decrementAndGet();
+        }
+        return count;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    @Override
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return busy.get();
+    }
+
+    @Override
+    public boolean isBlockingCheap() {
+        return false;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopped = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
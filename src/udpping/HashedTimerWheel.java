@@ -0,0 +1,143 @@
+package udpping;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮，用于在不阻塞接收线程的情况下按截止时间发送延迟响应。
+ * 插入只进入无锁队列，由时间轮线程在每个 tick 转移到对应的槽位，插入与到期均为 O(1)。
+ */
+public class HashedTimerWheel {
+    private static final class Timeout {
+        final Runnable task;
+        final long deadline;
+        long remainingRounds;
+        Timeout next;
+        Timeout prev;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            return next;
+        }
+    }
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final Thread worker;
+    private final long startTime;
+    private long tick;
+
+    public HashedTimerWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("时间轮槽位数必须是 2 的幂: " + wheelSize);
+        }
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        outstanding.incrementAndGet();
+        pending.offer(new Timeout(task, System.nanoTime() + unit.toNanos(delay)));
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public void stop() {
+        running.set(false);
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        while (running.get()) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+                continue;
+            }
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            // 第 n 个槽位在 (n + 1) * tickNanos 时刻处理，因此向上取整后减一
+            long ticks = Math.max((timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+                continue;
+            }
+            Timeout next = bucket.remove(timeout);
+            outstanding.decrementAndGet();
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("延迟任务执行失败: " + e.getMessage());
+            }
+            timeout = next;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网络损伤流水线：先执行界面/命令行设置的均匀丢失，再执行来源对应的损伤配置（突发丢包、限速、抖动、乱序、重复），
+ * 最后叠加界面设置的固定或随机延迟。每个来源的配置解析结果缓存在 Statistic 中，热路径上不查找配置、不加锁、不分配对象。
+ */
+public class ImpairmentPipeline {
+    private final ServerSettings settings;
+    private final Statistic overflow;
+
+    public ImpairmentPipeline(ServerSettings settings, Statistic overflow) {
+        this.settings = settings;
+        this.overflow = overflow;
+    }
+
+    public void evaluate(Statistic stat, InetAddress address, int length, ImpairmentResult result) {
+        result.reset();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (settings.getLoss() && random.nextInt(100) < settings.getLossRate()) {
+            result.drop();
+            return;
+        }
+        ImpairmentProfiles profiles = settings.getImpairments();
+        if (!profiles.isEmpty()) {
+            ImpairmentState state = stateFor(stat, address, profiles);
+            state.getProfile().apply(state, length, result, random);
+            if (result.isDropped()) {
+                return;
+            }
+        }
+        if (settings.getDelay()) {
+            int delayTime = settings.getDelayTime();
+            if (delayTime == -1) {
+                delayTime = random.nextInt(1000);
+            }
+            result.addDelay(TimeUnit.MILLISECONDS.toNanos(delayTime));
+        }
+    }
+
+    /**
+     * 配置被替换后重新解析并重置状态。“其他”统计项由多个来源共用，统一使用默认配置。
+     */
+    private ImpairmentState stateFor(Statistic stat, InetAddress address, ImpairmentProfiles profiles) {
+        ImpairmentState state = stat.getImpairmentState();
+        if (state == null || state.getProfiles() != profiles) {
+            ImpairmentProfile profile = stat == overflow ? profiles.getDefault() : profiles.forAddress(address);
+            state = new ImpairmentState(profiles, profile);
+            stat.setImpairmentState(state);
+        }
+        return state;
+    }
+}
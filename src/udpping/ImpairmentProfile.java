@@ -0,0 +1,161 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一组按顺序执行的损伤阶段，以及适用的来源地址范围。只有配置了参数的阶段才会加入流水线，
+ * 未配置的损伤没有任何开销。
+ */
+public class ImpairmentProfile {
+    private final String name;
+    private final byte[][] networks;
+    private final int[] prefixes;
+    private final ImpairmentStage[] stages;
+
+    private ImpairmentProfile(String name, byte[][] networks, int[] prefixes, ImpairmentStage[] stages) {
+        this.name = name;
+        this.networks = networks;
+        this.prefixes = prefixes;
+        this.stages = stages;
+    }
+
+    /**
+     * 从 properties 中读取以 prefix 开头的参数（百分比与毫秒均可带小数）：
+     * <pre>
+     * loss=百分比                         均匀丢包
+     * ge.p= ge.r= ge.loss-good= ge.loss-bad=  Gilbert-Elliott 突发丢包，均为百分比，坏状态丢包率默认 100
+     * rate=kbit/s queue=毫秒              限速链路及最大排队时间（默认 100）
+     * delay=毫秒 jitter=毫秒 jitter-dist=uniform|normal|pareto
+     * reorder=百分比 reorder-gap=毫秒     乱序，被选中的数据包额外延迟 reorder-gap（默认 10）
+     * duplicate=百分比                    重复
+     * match=CIDR,CIDR,...                 适用的来源（仅命名配置需要）
+     * </pre>
+     */
+    public static ImpairmentProfile parse(String name, Properties properties, String prefix) {
+        List<ImpairmentStage> stages = new ArrayList<>();
+        double loss = number(properties, prefix + "loss", 0);
+        if (loss > 0) {
+            stages.add(new ImpairmentStage.UniformLoss(percent(prefix + "loss", loss)));
+        }
+        double p = number(properties, prefix + "ge.p", 0);
+        if (p > 0) {
+            stages.add(new ImpairmentStage.GilbertElliottLoss(
+                    percent(prefix + "ge.p", p),
+                    percent(prefix + "ge.r", number(properties, prefix + "ge.r", 100)),
+                    percent(prefix + "ge.loss-good", number(properties, prefix + "ge.loss-good", 0)),
+                    percent(prefix + "ge.loss-bad", number(properties, prefix + "ge.loss-bad", 100))));
+        }
+        double rate = number(properties, prefix + "rate", 0);
+        if (rate > 0) {
+            stages.add(new ImpairmentStage.LinkCap(rate, (int) number(properties, prefix + "queue", 100)));
+        }
+        double delay = number(properties, prefix + "delay", 0);
+        double jitter = number(properties, prefix + "jitter", 0);
+        if (delay > 0 || jitter > 0) {
+            String distribution = properties.getProperty(prefix + "jitter-dist", "uniform").trim();
+            stages.add(new ImpairmentStage.Delay(delay, jitter, ImpairmentStage.Delay.Distribution.parse(distribution)));
+        }
+        double reorder = number(properties, prefix + "reorder", 0);
+        if (reorder > 0) {
+            stages.add(new ImpairmentStage.Reorder(percent(prefix + "reorder", reorder),
+                    number(properties, prefix + "reorder-gap", 10)));
+        }
+        double duplicate = number(properties, prefix + "duplicate", 0);
+        if (duplicate > 0) {
+            stages.add(new ImpairmentStage.Duplicate(percent(prefix + "duplicate", duplicate)));
+        }
+
+        String match = properties.getProperty(prefix + "match", "").trim();
+        String[] ranges = match.isEmpty() ? new String[0] : match.split("\\s*,\\s*");
+        byte[][] networks = new byte[ranges.length][];
+        int[] prefixes = new int[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            String range = ranges[i];
+            int slash = range.indexOf('/');
+            try {
+                networks[i] = InetAddress.getByName(slash < 0 ? range : range.substring(0, slash)).getAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("无效的地址范围: " + range);
+            }
+            int bits = networks[i].length * 8;
+            try {
+                prefixes[i] = slash < 0 ? bits : Integer.parseInt(range.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的地址范围: " + range);
+            }
+            // 前缀越界会在收包线程上匹配时越过地址数组，必须在加载配置时拒绝
+            if (prefixes[i] < 0 || prefixes[i] > bits) {
+                throw new IllegalArgumentException("地址范围 " + range + " 的前缀长度必须在0到" + bits + "之间");
+            }
+        }
+        return new ImpairmentProfile(name, networks, prefixes, stages.toArray(new ImpairmentStage[0]));
+    }
+
+    private static double number(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("配置项 " + key + " 不是数字: " + value);
+        }
+    }
+
+    private static double percent(String key, double value) {
+        if (value < 0 || value > 100) {
+            throw new IllegalArgumentException("配置项 " + key + " 必须在0到100之间");
+        }
+        return value;
+    }
+
+    public boolean matches(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        for (int i = 0; i < networks.length; i++) {
+            if (networks[i].length == bytes.length && prefixMatches(networks[i], bytes, prefixes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean prefixMatches(byte[] network, byte[] address, int prefix) {
+        int full = prefix / 8;
+        for (int i = 0; i < full; i++) {
+            if (network[i] != address[i]) {
+                return false;
+            }
+        }
+        int rest = prefix % 8;
+        if (rest == 0) {
+            return true;
+        }
+        int mask = 0xff << (8 - rest);
+        return (network[full] & mask) == (address[full] & mask);
+    }
+
+    /**
+     * 依次执行各阶段，某一阶段丢弃数据包后立即停止。
+     */
+    public void apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+        for (ImpairmentStage stage : stages) {
+            if (!stage.apply(state, length, result, random)) {
+                return;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEmpty() {
+        return stages.length == 0;
+    }
+}
@@ -0,0 +1,75 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * 一次加载的全部损伤配置，不可变，配置热更新时整体替换。键名格式：
+ * <pre>
+ * impair.&lt;参数&gt;=...                    默认配置，适用于未匹配任何命名配置的来源
+ * impair.profile.&lt;名称&gt;.match=CIDR,...   命名配置适用的来源，按名称顺序匹配，先匹配者生效
+ * impair.profile.&lt;名称&gt;.&lt;参数&gt;=...
+ * </pre>
+ * 参数见 {@link ImpairmentProfile#parse(String, Properties, String)}。
+ */
+public class ImpairmentProfiles {
+    public static final String PREFIX = "impair.";
+    private static final String PROFILE_PREFIX = PREFIX + "profile.";
+
+    public static final ImpairmentProfiles EMPTY =
+            new ImpairmentProfiles(ImpairmentProfile.parse("default", new Properties(), PREFIX), new ImpairmentProfile[0]);
+
+    private final ImpairmentProfile defaultProfile;
+    private final ImpairmentProfile[] profiles;
+
+    private ImpairmentProfiles(ImpairmentProfile defaultProfile, ImpairmentProfile[] profiles) {
+        this.defaultProfile = defaultProfile;
+        this.profiles = profiles;
+    }
+
+    public static ImpairmentProfiles parse(Properties properties) {
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PROFILE_PREFIX)) {
+                int dot = key.indexOf('.', PROFILE_PREFIX.length());
+                if (dot < 0) {
+                    throw new IllegalArgumentException("无效的损伤配置项: " + key);
+                }
+                names.add(key.substring(PROFILE_PREFIX.length(), dot));
+            }
+        }
+        List<ImpairmentProfile> profiles = new ArrayList<>();
+        for (String name : names) {
+            String prefix = PROFILE_PREFIX + name + ".";
+            if (properties.getProperty(prefix + "match", "").isBlank()) {
+                throw new IllegalArgumentException("损伤配置 " + name + " 缺少 match");
+            }
+            profiles.add(ImpairmentProfile.parse(name, properties, prefix));
+        }
+        return new ImpairmentProfiles(ImpairmentProfile.parse("default", properties, PREFIX),
+                profiles.toArray(new ImpairmentProfile[0]));
+    }
+
+    public ImpairmentProfile forAddress(InetAddress address) {
+        for (ImpairmentProfile profile : profiles) {
+            if (profile.matches(address)) {
+                return profile;
+            }
+        }
+        return defaultProfile;
+    }
+
+    public ImpairmentProfile getDefault() {
+        return defaultProfile;
+    }
+
+    /**
+     * 没有配置任何损伤时为 true，流水线可以跳过按来源查找配置。
+     */
+    public boolean isEmpty() {
+        return profiles.length == 0 && defaultProfile.isEmpty();
+    }
+}
@@ -0,0 +1,48 @@
+package udpping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 损伤流水线对单个数据包的判定结果。每个接收循环复用一个实例，判定过程中不分配对象。
+ */
+public class ImpairmentResult {
+    private boolean dropped;
+    private long delayNanos;
+    private int copies;
+
+    void reset() {
+        dropped = false;
+        delayNanos = 0;
+        copies = 1;
+    }
+
+    void drop() {
+        dropped = true;
+    }
+
+    void addDelay(long nanos) {
+        delayNanos = Math.max(0, delayNanos + nanos);
+    }
+
+    void addCopy() {
+        copies++;
+    }
+
+    public boolean isDropped() {
+        return dropped;
+    }
+
+    /**
+     * 时间轮的精度为 1 毫秒，延迟按毫秒四舍五入。
+     */
+    public int getDelayMillis() {
+        return (int) TimeUnit.NANOSECONDS.toMillis(delayNanos + TimeUnit.MICROSECONDS.toNanos(500));
+    }
+
+    /**
+     * 需要发送的回复份数，大于 1 表示模拟重复。
+     */
+    public int getCopies() {
+        return copies;
+    }
+}
@@ -0,0 +1,187 @@
+package udpping;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网络损伤流水线中的一个阶段。阶段本身不可变，可被所有线程共享；每个来源的可变状态放在 {@link ImpairmentState} 中，
+ * 随机数使用调用线程的 ThreadLocalRandom，多个接收线程之间没有共享的随机数生成器。
+ */
+public interface ImpairmentStage {
+    /**
+     * 对数据包施加损伤，结果写入 result。返回 false 表示数据包已被丢弃，后续阶段不再执行。
+     */
+    boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random);
+
+    /**
+     * 按百分比均匀丢包。
+     */
+    class UniformLoss implements ImpairmentStage {
+        private final double probability;
+
+        UniformLoss(double percent) {
+            this.probability = percent / 100;
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            if (random.nextDouble() < probability) {
+                result.drop();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gilbert-Elliott 突发丢包：信道在好、坏两个状态间按 p（好→坏）、r（坏→好）转移，
+     * 两个状态各有自己的丢包率，从而产生成串的连续丢包。
+     */
+    class GilbertElliottLoss implements ImpairmentStage {
+        private final double p;
+        private final double r;
+        private final double lossGood;
+        private final double lossBad;
+
+        /**
+         * 参数均为百分比。
+         */
+        GilbertElliottLoss(double p, double r, double lossGood, double lossBad) {
+            this.p = p / 100;
+            this.r = r / 100;
+            this.lossGood = lossGood / 100;
+            this.lossBad = lossBad / 100;
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            boolean bad = state.isBad();
+            if (random.nextDouble() < (bad ? r : p)) {
+                bad = !bad;
+                state.setBad(bad);
+            }
+            if (random.nextDouble() < (bad ? lossBad : lossGood)) {
+                result.drop();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 限速链路：按带宽计算每个数据包的发送耗时，排在前面的数据包未发完时在队列中等待，
+     * 排队时间超过上限时尾部丢弃。链路空闲时刻用 CAS 推进，没有锁。
+     */
+    class LinkCap implements ImpairmentStage {
+        private final double nanosPerByte;
+        private final long queueLimitNanos;
+
+        LinkCap(double kbitPerSecond, int queueMillis) {
+            this.nanosPerByte = 8e6 / kbitPerSecond;
+            this.queueLimitNanos = TimeUnit.MILLISECONDS.toNanos(queueMillis);
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            long now = System.nanoTime();
+            long transmit = (long) (length * nanosPerByte);
+            while (true) {
+                long free = state.getLinkFree().get();
+                long begin = free == Long.MIN_VALUE || free - now < 0 ? now : free;
+                if (begin - now > queueLimitNanos) {
+                    result.drop();
+                    return false;
+                }
+                if (state.getLinkFree().compareAndSet(free, begin + transmit)) {
+                    result.addDelay(begin + transmit - now);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 固定延迟加抖动。抖动分布为 uniform（±jitter 均匀分布）、normal（标准差为 jitter 的正态分布）
+     * 或 pareto（形状参数 2、尺度为 jitter 的帕累托分布，只增不减，带长尾）。
+     */
+    class Delay implements ImpairmentStage {
+        public enum Distribution {
+            UNIFORM, NORMAL, PARETO;
+
+            public static Distribution parse(String value) {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            }
+        }
+
+        private final long delayNanos;
+        private final long jitterNanos;
+        private final Distribution distribution;
+
+        Delay(double delayMillis, double jitterMillis, Distribution distribution) {
+            this.delayNanos = (long) (delayMillis * 1e6);
+            this.jitterNanos = (long) (jitterMillis * 1e6);
+            this.distribution = distribution;
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            long jitter = 0;
+            if (jitterNanos > 0) {
+                switch (distribution) {
+                    case NORMAL:
+                        jitter = (long) (random.nextGaussian() * jitterNanos);
+                        break;
+                    case PARETO:
+                        jitter = (long) (jitterNanos * (1 / Math.sqrt(1 - random.nextDouble()) - 1));
+                        break;
+                    default:
+                        jitter = random.nextLong(-jitterNanos, jitterNanos + 1);
+                        break;
+                }
+            }
+            result.addDelay(Math.max(0, delayNanos + jitter));
+            return true;
+        }
+    }
+
+    /**
+     * 按概率给数据包额外增加延迟，使其被之后的数据包超过，产生乱序。
+     */
+    class Reorder implements ImpairmentStage {
+        private final double probability;
+        private final long gapNanos;
+
+        Reorder(double percent, double gapMillis) {
+            this.probability = percent / 100;
+            this.gapNanos = (long) (gapMillis * 1e6);
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            if (random.nextDouble() < probability) {
+                result.addDelay(gapNanos);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 按概率重复发送回复。
+     */
+    class Duplicate implements ImpairmentStage {
+        private final double probability;
+
+        Duplicate(double percent) {
+            this.probability = percent / 100;
+        }
+
+        @Override
+        public boolean apply(ImpairmentState state, int length, ImpairmentResult result, ThreadLocalRandom random) {
+            if (random.nextDouble() < probability) {
+                result.addCopy();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package udpping;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个来源的损伤状态：Gilbert-Elliott 信道当前是否处于坏状态、限速链路的下一个空闲时刻，
+ * 以及按当前配置解析出的损伤配置（配置热更新后重新解析并重置状态）。
+ */
+public class ImpairmentState {
+    private final ImpairmentProfiles profiles;
+    private final ImpairmentProfile profile;
+    private volatile boolean bad;
+    private final AtomicLong linkFree = new AtomicLong(Long.MIN_VALUE);
+
+    ImpairmentState(ImpairmentProfiles profiles, ImpairmentProfile profile) {
+        this.profiles = profiles;
+        this.profile = profile;
+    }
+
+    ImpairmentProfiles getProfiles() {
+        return profiles;
+    }
+
+    ImpairmentProfile getProfile() {
+        return profile;
+    }
+
+    boolean isBad() {
+        return bad;
+    }
+
+    void setBad(boolean bad) {
+        this.bad = bad;
+    }
+
+    AtomicLong getLinkFree() {
+        return linkFree;
+    }
+}
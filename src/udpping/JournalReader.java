@@ -0,0 +1,162 @@
+package udpping;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 从磁盘顺序读取数据包日志，按段文件编号依次流式读取，每次只占用一块固定大小的缓冲区，
+ * 可以读取正在写入的日志。也可作为命令行导出工具使用：
+ * <pre>
+ * java -cp udp-ping-server.jar udpping.JournalReader 目录 [--ip=地址] [--from=时间] [--to=时间] [--csv] [--out=文件]
+ * </pre>
+ * 时间格式为 "yyyy-MM-dd HH:mm:ss"（本地时区），--from 包含、--to 不包含。
+ */
+public class JournalReader {
+    private static final int CHUNK_RECORDS = 512;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private JournalReader() {
+    }
+
+    /**
+     * 构造过滤条件，address 为 null 表示不限来源，fromNanos/toNanos 为纪元纳秒的 [from, to) 区间。
+     */
+    public static Predicate<JournalRecord> filter(InetAddress address, long fromNanos, long toNanos) {
+        return record -> (address == null || record.hasAddress(address))
+                && record.getTimeNanos() >= fromNanos && record.getTimeNanos() < toNanos;
+    }
+
+    /**
+     * 依次读取目录下所有段文件中已提交且满足 filter 的记录，返回读出的条数。
+     * consumer 收到的记录对象会被复用，需要保留时应自行拷贝字段。
+     */
+    public static long read(Path directory, Predicate<JournalRecord> filter, Consumer<JournalRecord> consumer)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_RECORDS * PacketJournal.RECORD_SIZE);
+        JournalRecord record = new JournalRecord();
+        long count = 0;
+        for (Path file : PacketJournal.segmentFiles(directory)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                    buffer.flip();
+                    int records = buffer.remaining() / PacketJournal.RECORD_SIZE;
+                    if (records == 0) {
+                        break;
+                    }
+                    for (int i = 0; i < records; i++) {
+                        int offset = i * PacketJournal.RECORD_SIZE;
+                        int state = buffer.getInt(offset);
+                        if (state != 0 && record.load(buffer, offset, state) && filter.test(record)) {
+                            consumer.accept(record);
+                            count++;
+                        }
+                    }
+                    buffer.position(records * PacketJournal.RECORD_SIZE);
+                    buffer.compact();
+                }
+            } catch (NoSuchFileException e) {
+                // 段文件在列出后被滚动删除
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把满足 filter 的记录以文本或 CSV 格式写入 writer，返回导出的条数。
+     */
+    public static long export(Path directory, Predicate<JournalRecord> filter, boolean csv, Writer writer)
+            throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        if (csv) {
+            writer.write("time_ns,verdict,address,port,sequence,length,extra,payload\n");
+        }
+        try {
+            return read(directory, filter, record -> {
+                line.setLength(0);
+                if (csv) {
+                    record.renderCsv(line);
+                } else {
+                    record.render(line);
+                }
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new ExportException(e);
+                }
+            });
+        } catch (ExportException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    private static final class ExportException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private static long parseTime(String value) {
+        LocalDateTime time = LocalDateTime.parse(value, TIME_FORMAT);
+        return TimeUnit.SECONDS.toNanos(time.atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = null;
+        InetAddress address = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        boolean csv = false;
+        Path out = null;
+        for (String arg : args) {
+            if (arg.startsWith("--ip=")) {
+                address = InetAddress.getByName(arg.substring("--ip=".length()));
+            } else if (arg.startsWith("--from=")) {
+                from = parseTime(arg.substring("--from=".length()));
+            } else if (arg.startsWith("--to=")) {
+                to = parseTime(arg.substring("--to=".length()));
+            } else if (arg.equals("--csv")) {
+                csv = true;
+            } else if (arg.startsWith("--out=")) {
+                out = Path.of(arg.substring("--out=".length()));
+            } else if (!arg.startsWith("--") && directory == null) {
+                directory = Path.of(arg);
+            } else {
+                throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (directory == null) {
+            System.out.println("参数: 目录 [--ip=地址] [--from=yyyy-MM-dd HH:mm:ss] [--to=yyyy-MM-dd HH:mm:ss] [--csv] [--out=文件]");
+            return;
+        }
+        Predicate<JournalRecord> filter = filter(address, from, to);
+        if (out == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            export(directory, filter, csv, writer);
+            writer.flush();
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            long count = export(directory, filter, csv, writer);
+            System.out.println("已导出 " + count + " 条记录到 " + out);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * 数据包日志中的一条记录。作为可复用的享元使用，读取时从映射内存或文件缓冲区拷贝字段，
+ * 格式见 {@link PacketJournal}。
+ */
+public class JournalRecord {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final PacketJournal.Verdict[] VERDICTS = PacketJournal.Verdict.values();
+
+    private PacketJournal.Verdict verdict;
+    private long timeNanos;
+    private final byte[] address = new byte[16];
+    private int addressLength;
+    private int port;
+    private long sequence;
+    private int length;
+    private int extra;
+    private final byte[] payload = new byte[PacketJournal.MAX_PAYLOAD];
+    private int payloadLength;
+
+    /**
+     * 从 buffer 的 offset 处读取一条记录，state 为已读出的提交标记。记录损坏时返回 false。
+     */
+    boolean load(ByteBuffer buffer, int offset, int state) {
+        int code = state & 0xffff;
+        if ((state & 0xffff0000) != PacketJournal.COMMIT_MARK || code < 1 || code > VERDICTS.length) {
+            return false;
+        }
+        verdict = VERDICTS[code - 1];
+        addressLength = buffer.get(offset + 4);
+        if (addressLength != 0 && addressLength != 4 && addressLength != 16) {
+            return false;
+        }
+        port = buffer.getShort(offset + 6) & 0xffff;
+        timeNanos = buffer.getLong(offset + 8);
+        sequence = buffer.getLong(offset + 16);
+        buffer.get(offset + 24, address, 0, addressLength);
+        length = buffer.getShort(offset + 40) & 0xffff;
+        payloadLength = Math.min(buffer.getShort(offset + 42) & 0xffff, PacketJournal.MAX_PAYLOAD);
+        extra = buffer.getInt(offset + 44);
+        buffer.get(offset + PacketJournal.PAYLOAD, payload, 0, payloadLength);
+        return true;
+    }
+
+    public PacketJournal.Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * 记录时间，纪元纳秒。
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * 判断源地址是否为 target，不创建 InetAddress。
+     */
+    public boolean hasAddress(InetAddress target) {
+        byte[] bytes = target.getAddress();
+        return bytes.length == addressLength && Arrays.equals(address, 0, addressLength, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 源地址，过载丢弃且来源已归入“其他”时为 null。
+     */
+    public InetAddress getAddress() {
+        if (addressLength == 0) {
+            return null;
+        }
+        try {
+            return InetAddress.getByAddress(Arrays.copyOf(address, addressLength));
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 负载原始长度，保存的负载最多 {@value PacketJournal#MAX_PAYLOAD} 字节。
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 模拟延迟的毫秒数，其余判定结果为 0。
+     */
+    public int getExtra() {
+        return extra;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    private String source() {
+        InetAddress address = getAddress();
+        return address == null ? StatisticRegistry.OVERFLOW_IP : address.getHostAddress();
+    }
+
+    /**
+     * 以一行文本输出记录，不可打印的负载字节显示为“.”。
+     */
+    public void render(StringBuilder out) {
+        Instant time = Instant.ofEpochSecond(0, timeNanos);
+        out.append(LocalDateTime.ofInstant(time, ZoneId.systemDefault()).format(FORMATTER)).append(' ')
+                .append(verdict.getLabel()).append(' ').append(source()).append(':').append(port);
+        if (sequence >= 0) {
+            out.append(" 序号=").append(sequence);
+        }
+        if (verdict == PacketJournal.Verdict.DELAYED) {
+            out.append(" 延迟=").append(extra).append("ms");
+        }
+        out.append(" 长度=").append(length).append(" 数据=");
+        for (int i = 0; i < payloadLength; i++) {
+            byte b = payload[i];
+            out.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+        }
+        if (payloadLength < length) {
+            out.append(" ...");
+        }
+        out.append('\n');
+    }
+
+    /**
+     * 以 CSV 输出：纪元纳秒,判定结果,源地址,源端口,序号,长度,附加值,负载十六进制。
+     */
+    public void renderCsv(StringBuilder out) {
+        out.append(timeNanos).append(',').append(verdict.name()).append(',').append(source()).append(',')
+                .append(port).append(',').append(sequence).append(',').append(length).append(',').append(extra).append(',');
+        for (int i = 0; i < payloadLength; i++) {
+            out.append(Character.forDigit((payload[i] >> 4) & 0xf, 16)).append(Character.forDigit(payload[i] & 0xf, 16));
+        }
+        out.append('\n');
+    }
+}
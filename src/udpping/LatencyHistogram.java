@@ -0,0 +1,117 @@
+package udpping;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的延迟直方图（与 HdrHistogram 的思路相同）：每个 2 的幂区间再线性划分为 2^precision 个子桶，
+ * 相对误差约为 1/2^precision，内存固定。记录操作只对单个桶做一次原子自增，可被多个线程并发调用。
+ * <p>
+ * stripes 大于 1 时计数按线程分成多组互不共享缓存行的桶，许多线程同时记录同一个直方图时减少竞争，读取时再合并。
+ */
+public class LatencyHistogram {
+    private final int precision;
+    private final int buckets;
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final AtomicLong max = new AtomicLong();
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram(int precision) {
+        this(precision, 1);
+    }
+
+    /**
+     * stripes 必须是 2 的幂。
+     */
+    public LatencyHistogram(int precision, int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("分组数必须是 2 的幂: " + stripes);
+        }
+        this.precision = precision;
+        this.buckets = 64 << precision;
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(buckets * stripes);
+    }
+
+    public void record(long value) {
+        long v = Math.max(1, value);
+        int stripe = stripeMask == 0 ? 0 : (int) Thread.currentThread().getId() & stripeMask;
+        counts.getAndIncrement(stripe * buckets + index(v));
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    private int index(long v) {
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = exp >= precision ? (int) (v >>> (exp - precision)) : (int) (v << (precision - exp));
+        return (exp << precision) + (sub & ((1 << precision) - 1));
+    }
+
+    /**
+     * 桶内的最大值，作为该桶的代表值，保证报告的百分位不低于真实值。
+     */
+    private long upperValue(int index) {
+        int exp = index >>> precision;
+        long sub = (index & ((1 << precision) - 1)) + (1L << precision) + 1;
+        return exp >= precision ? (sub << (exp - precision)) - 1 : sub >>> (precision - exp);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 不超过 value 的记录数，按桶的代表值比较，供导出固定边界的累积直方图使用。
+     */
+    public long countAtOrBelow(long value) {
+        long total = 0;
+        for (int i = 0; i < buckets && upperValue(i) <= value; i++) {
+            for (int j = i; j < counts.length(); j += buckets) {
+                total += counts.get(j);
+            }
+        }
+        return total;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long percentile(double p) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            for (int j = i; j < counts.length(); j += buckets) {
+                seen += counts.get(j);
+            }
+            if (seen >= rank) {
+                return Math.min(upperValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+        sum.reset();
+    }
+}
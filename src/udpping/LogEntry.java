@@ -0,0 +1,127 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * 日志环形缓冲区中的预分配槽位。生产者只拷贝原始字段，文本在界面线程取出时才格式化。
+ */
+public class LogEntry {
+    public enum Kind {
+        MESSAGE, LOSS, DELAY, TEXT
+    }
+
+    public static final int MAX_DATA = 128;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    long sequence;
+    private Kind kind;
+    private long timeMillis;
+    private int messageNumber;
+    private InetAddress address;
+    private int sourcePort;
+    private int localPort;
+    private int offset;
+    private int length;
+    private int delayTime;
+    private boolean payloadValid;
+    private long payloadSequence;
+    private long payloadTimestamp;
+    private String text;
+    private final byte[] data = new byte[MAX_DATA];
+    private int dataLength;
+
+    void setMessage(int messageNumber, InetAddress address, int sourcePort, int localPort, ByteBuffer payload, PingPayload parsed) {
+        reset(Kind.MESSAGE);
+        this.messageNumber = messageNumber;
+        this.address = address;
+        this.sourcePort = sourcePort;
+        this.localPort = localPort;
+        this.offset = payload.position();
+        this.payloadValid = parsed.isValid();
+        this.payloadSequence = parsed.getSequenceNumber();
+        this.payloadTimestamp = parsed.getTimestamp();
+        copyData(payload);
+    }
+
+    void setLoss(InetAddress address, ByteBuffer payload) {
+        reset(Kind.LOSS);
+        this.address = address;
+        copyData(payload);
+    }
+
+    void setDelay(InetAddress address, int delayTime, ByteBuffer payload) {
+        reset(Kind.DELAY);
+        this.address = address;
+        this.delayTime = delayTime;
+        copyData(payload);
+    }
+
+    void setText(String text) {
+        reset(Kind.TEXT);
+        this.text = text;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    private void reset(Kind kind) {
+        this.kind = kind;
+        this.timeMillis = System.currentTimeMillis();
+        this.address = null;
+        this.text = null;
+    }
+
+    private void copyData(ByteBuffer payload) {
+        length = payload.remaining();
+        dataLength = Math.min(length, MAX_DATA);
+        for (int i = 0; i < dataLength; i++) {
+            data[i] = payload.get(payload.position() + i);
+        }
+    }
+
+    void render(StringBuilder out) {
+        out.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault()).format(FORMATTER)).append(' ');
+        switch (kind) {
+            case MESSAGE:
+                String ip = address.getHostAddress();
+                out.append("第 ").append(messageNumber).append(" 条消息\n收到来自 ").append(ip)
+                        .append(" 地址的消息\n头部信息为：源端口: ").append(sourcePort).append(", 目标端口: ").append(localPort)
+                        .append(", 数据长度: ").append(length).append(", 源地址: ").append(ip).append(", 数据偏移: ").append(offset)
+                        .append("\n有效负载为：");
+                if (payloadValid) {
+                    out.append("{PingUDP=PingUDP, SequenceNumber=").append(payloadSequence)
+                            .append(", TimeStamp=").append(payloadTimestamp).append('}');
+                } else {
+                    out.append("{}");
+                }
+                out.append("\n实际数据内容：").append(Arrays.toString(Arrays.copyOf(data, dataLength)));
+                if (dataLength < length) {
+                    out.append(" ...");
+                }
+                out.append('\n');
+                break;
+            case LOSS:
+                out.append("模拟丢失该数据包，数据包内容如下：").append(content());
+                break;
+            case DELAY:
+                out.append("延迟该数据包").append(delayTime).append(" ms，数据包内容如下：").append(content());
+                break;
+            default:
+                out.append(text);
+                break;
+        }
+        out.append('\n');
+    }
+
+    private String content() {
+        return new String(data, 0, dataLength, Charset.defaultCharset());
+    }
+}
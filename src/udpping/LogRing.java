@@ -0,0 +1,77 @@
+package udpping;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界无锁多生产者单消费者环形缓冲区（Vyukov 算法），槽位预先分配。
+ * 缓冲区满时直接丢弃新日志并计数，生产者永远不会被界面线程阻塞。
+ */
+public class LogRing {
+    private final LogEntry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long head;
+
+    public LogRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("日志缓冲区容量必须是 2 的幂: " + capacity);
+        }
+        entries = new LogEntry[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new LogEntry();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * 申请一个可写槽位，缓冲区满时返回 null。写入完成后必须调用 {@link #publish(LogEntry)}。
+     */
+    public LogEntry claim() {
+        while (true) {
+            long pos = tail.get();
+            long diff = sequences.get((int) (pos & mask)) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    LogEntry entry = entries[(int) (pos & mask)];
+                    entry.sequence = pos;
+                    return entry;
+                }
+            } else if (diff < 0) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    public void publish(LogEntry entry) {
+        sequences.lazySet((int) (entry.sequence & mask), entry.sequence + 1);
+    }
+
+    /**
+     * 仅由单个消费者线程调用，最多取出 maxBatch 条日志。
+     */
+    public int drain(Consumer<LogEntry> consumer, int maxBatch) {
+        int count = 0;
+        while (count < maxBatch) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            consumer.accept(entries[index]);
+            sequences.lazySet(index, head + entries.length);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
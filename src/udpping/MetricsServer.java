@@ -0,0 +1,286 @@
+package udpping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 以 Prometheus 文本格式在 /metrics 上导出服务端指标。所有数值都在抓取时从热路径上的无锁计数器汇总，
+ * 请求由单个后台线程处理，不占用收包和工作线程。
+ */
+public class MetricsServer {
+    private static final long[] LATENCY_BOUNDS_MICROS = {
+            50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000
+    };
+    private static final Path SNMP = Path.of("/proc/net/snmp");
+    private static final Path SNMP6 = Path.of("/proc/net/snmp6");
+
+    private final UDPPingServer server;
+    private final int topSources;
+    private final HttpServer httpServer;
+    private final ExecutorService handler;
+
+    public MetricsServer(int port, int topSources, UDPPingServer server) throws IOException {
+        this.server = server;
+        this.topSources = topSources;
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        handler = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(handler);
+        httpServer.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        handler.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        ServerMetrics metrics = server.getMetrics();
+        counter(sb, "udpping_packets_received_total", "收到的数据包数", metrics.getReceived());
+        counter(sb, "udpping_packets_replied_total", "已回复的数据包数", metrics.getReplied());
+        counter(sb, "udpping_packets_dropped_total", "模拟丢失丢弃的数据包数", metrics.getDropped());
+        counter(sb, "udpping_packets_delayed_total", "模拟延迟的数据包数", metrics.getDelayed());
+        counter(sb, "udpping_packets_duplicated_total", "模拟重复多发送的回复数", metrics.getDuplicated());
+        counter(sb, "udpping_packets_shed_total", "队列满时过载丢弃的数据包数", metrics.getShed());
+        counter(sb, "udpping_packets_rate_limited_total", "超出来源限速被丢弃的数据包数", metrics.getRateLimited());
+        counter(sb, "udpping_packets_malformed_total", "格式错误的数据包数", metrics.getMalformed());
+
+        gauge(sb, "udpping_executor_queue_depth", "等待处理的数据包数", server.getQueueDepth());
+        gauge(sb, "udpping_executor_queue_capacity", "处理队列容量", server.getQueueCapacity());
+        gauge(sb, "udpping_executor_active_threads", "正在处理数据包的线程数", server.getActiveThreads());
+        gauge(sb, "udpping_delay_queue_depth", "时间轮中等待发送的延迟数据包数", server.getDelayQueueDepth());
+        gauge(sb, "udpping_delay_lateness_max_seconds", "延迟数据包实际发送时间晚于计划的最大值",
+                server.getDelayAccuracy().getMaxLatenessMillis() / 1000);
+        if (server.getBufferPoolMisses() >= 0) {
+            counter(sb, "udpping_buffer_pool_misses_total", "缓冲池耗尽时临时分配的缓冲区数", server.getBufferPoolMisses());
+        }
+        if (server.getJournalDropped() >= 0) {
+            counter(sb, "udpping_journal_dropped_total", "日志段尚未映射而放弃的数据包日志记录数", server.getJournalDropped());
+        }
+
+        histogram(sb, "udpping_reply_latency_seconds", "收到数据包到回复发出的耗时", metrics.getLatency());
+        if (server.getSender() != null) {
+            sender(sb, server.getSender());
+        }
+        sources(sb);
+        socketErrors(sb);
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String help, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, help, "counter");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        header(sb, name, help, "gauge");
+        sb.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void histogram(StringBuilder sb, String name, String help, LatencyHistogram histogram) {
+        header(sb, name, help, "histogram");
+        // 先取总数，保证各桶累积计数不超过 +Inf 桶
+        long count = histogram.getCount();
+        for (long bound : LATENCY_BOUNDS_MICROS) {
+            sb.append(name).append("_bucket{le=\"").append(format(bound / 1e6)).append("\"} ")
+                    .append(Math.min(count, histogram.countAtOrBelow(bound))).append('\n');
+        }
+        sb.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        sb.append(name).append("_sum ").append(format(histogram.getSum() / 1e6)).append('\n');
+        sb.append(name).append("_count ").append(count).append('\n');
+    }
+
+    /**
+     * 独立发送阶段的队列深度与每次取出的批量大小分布。
+     */
+    private static void sender(StringBuilder sb, SenderStage sender) {
+        gauge(sb, "udpping_sender_queue_depth", "发送队列中等待发送的回复数", sender.getQueueDepth());
+        gauge(sb, "udpping_sender_queue_capacity", "发送队列容量", sender.getCapacity());
+        gauge(sb, "udpping_sender_active_threads", "正在发送回复的发送线程数", sender.getActiveCount());
+        counter(sb, "udpping_sender_queue_full_total", "发送队列已满而丢弃的回复数", sender.getQueueFull());
+        counter(sb, "udpping_sender_send_failed_total", "发送失败的回复数", sender.getSendFailed());
+        String name = "udpping_sender_batch_size";
+        header(sb, name, "发送线程每次从队列取出的回复数", "histogram");
+        long[] bounds = SenderStage.getBatchBounds();
+        long[] counts = sender.getBatchCounts();
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            sb.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[bounds.length];
+        sb.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        sb.append(name).append("_sum ").append(sender.getBatchedReplies()).append('\n');
+        sb.append(name).append("_count ").append(cumulative).append('\n');
+    }
+
+    /**
+     * 按包数取前 N 个来源，每个来源只读取其 LongAdder 计数，不复制统计项。
+     */
+    private void sources(StringBuilder sb) {
+        StatisticRegistry registry = server.getStatistics();
+        gauge(sb, "udpping_sources_tracked", "当前保留统计的来源数", registry.size());
+        if (topSources <= 0) {
+            return;
+        }
+        PriorityQueue<Statistic> top = new PriorityQueue<>(topSources + 1, Comparator.comparingLong(Statistic::getPackets));
+        for (Statistic stat : registry.values()) {
+            top.offer(stat);
+            if (top.size() > topSources) {
+                top.poll();
+            }
+        }
+        Statistic overflow = registry.getOverflow();
+        if (overflow.getPackets() > 0) {
+            top.offer(overflow);
+        }
+        List<Statistic> selected = new ArrayList<>(top);
+        sourceMetric(sb, selected, "udpping_source_packets_total", "来源发来的数据包数", "counter", Statistic::getPackets);
+        sourceMetric(sb, selected, "udpping_source_bytes_total", "来源发来的字节数", "counter", Statistic::getBytes);
+        sourceMetric(sb, selected, "udpping_source_dropped_total", "来源被模拟丢失的数据包数", "counter", Statistic::getDropCount);
+        sourceMetric(sb, selected, "udpping_source_delayed_total", "来源被模拟延迟的数据包数", "counter", Statistic::getDelayCount);
+        sourceMetric(sb, selected, "udpping_source_shed_total", "来源被过载丢弃的数据包数", "counter", Statistic::getShedCount);
+        sourceMetric(sb, selected, "udpping_source_rate_limited_total", "来源被限速丢弃的数据包数", "counter",
+                Statistic::getRateLimitedCount);
+        sourceMetric(sb, selected, "udpping_source_packets_per_second", "来源最近 5 秒的包速率", "gauge",
+                Statistic::getPacketsPerSecond);
+    }
+
+    private interface SourceValue {
+        double get(Statistic stat);
+    }
+
+    private static void sourceMetric(StringBuilder sb, List<Statistic> sources, String name, String help, String type,
+                                     SourceValue value) {
+        header(sb, name, help, type);
+        for (Statistic stat : sources) {
+            sb.append(name).append("{source=\"").append(stat.getIp()).append("\"} ")
+                    .append(format(value.get(stat))).append('\n');
+        }
+    }
+
+    /**
+     * 内核 UDP 计数（整个网络命名空间），接收缓冲区溢出说明收包线程来不及读取。非 Linux 系统上省略。
+     */
+    private static void socketErrors(StringBuilder sb) {
+        long[] v4 = readSnmp();
+        long[] v6 = readSnmp6();
+        if (v4 == null && v6 == null) {
+            return;
+        }
+        String[] names = {"udpping_udp_rcvbuf_errors_total", "udpping_udp_sndbuf_errors_total", "udpping_udp_in_errors_total"};
+        String[] helps = {"内核因接收缓冲区已满丢弃的 UDP 数据报数", "内核因发送缓冲区已满丢弃的 UDP 数据报数", "内核收到的错误 UDP 数据报数"};
+        for (int i = 0; i < names.length; i++) {
+            header(sb, names[i], helps[i], "counter");
+            if (v4 != null) {
+                sb.append(names[i]).append("{family=\"ipv4\"} ").append(v4[i]).append('\n');
+            }
+            if (v6 != null) {
+                sb.append(names[i]).append("{family=\"ipv6\"} ").append(v6[i]).append('\n');
+            }
+        }
+    }
+
+    /**
+     * /proc/net/snmp 中 Udp 为两行：字段名一行、数值一行。
+     */
+    private static long[] readSnmp() {
+        try {
+            List<String> lines = Files.readAllLines(SNMP);
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                if (lines.get(i).startsWith("Udp: ") && lines.get(i + 1).startsWith("Udp: ")) {
+                    String[] keys = lines.get(i).split("\\s+");
+                    String[] values = lines.get(i + 1).split("\\s+");
+                    long[] result = new long[3];
+                    for (int k = 1; k < keys.length && k < values.length; k++) {
+                        store(result, keys[k], Long.parseLong(values[k]));
+                    }
+                    return result;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 非 Linux 或格式不同，不导出
+        }
+        return null;
+    }
+
+    /**
+     * /proc/net/snmp6 每行一个“名称 数值”。
+     */
+    private static long[] readSnmp6() {
+        try {
+            long[] result = new long[3];
+            for (String line : Files.readAllLines(SNMP6)) {
+                if (line.startsWith("Udp6")) {
+                    String[] parts = line.split("\\s+");
+                    store(result, parts[0].substring("Udp6".length()), Long.parseLong(parts[1]));
+                }
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void store(long[] result, String key, long value) {
+        switch (key) {
+            case "RcvbufErrors":
+                result[0] = value;
+                break;
+            case "SndbufErrors":
+                result[1] = value;
+                break;
+            case "InErrors":
+                result[2] = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
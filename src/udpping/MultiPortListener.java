@@ -0,0 +1,240 @@
+package udpping;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 用一个 Selector 和一个线程同时监听多个端口，每个端口一个非阻塞 DatagramChannel。
+ * 端口集合变化时唤醒 Selector，在循环内增删端口，不需要等待旧端口上的下一个数据包，也不需要重启循环。
+ * <p>
+ * 移除端口时先读完该端口接收缓冲区中已到达的数据包，再取消注册；已交给工作线程或时间轮的数据包
+ * 仍通过原通道回复，最后一个在途数据包处理完后才关闭通道，因此切换端口不会丢失数据包。
+ */
+public class MultiPortListener {
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * 处理一个收到的数据包。需要异步回复的数据包应先调用 {@link Port#acquire()}，回复或丢弃后调用 {@link Port#release()}。
+     */
+    public interface Receiver {
+        void receive(Port port, InetSocketAddress source, ByteBuffer buffer, long receivedNanos);
+    }
+
+    /**
+     * 一个监听端口及其在途数据包计数。
+     */
+    public static final class Port {
+        private final int number;
+        private final DatagramChannel channel;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean closing;
+
+        private Port(int number, DatagramChannel channel) {
+            this.number = number;
+            this.channel = channel;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public DatagramChannel getChannel() {
+            return channel;
+        }
+
+        public void acquire() {
+            inFlight.incrementAndGet();
+        }
+
+        public void release() {
+            if (inFlight.decrementAndGet() == 0 && closing) {
+                close();
+            }
+        }
+
+        /**
+         * 标记为关闭，没有在途数据包时立即关闭，否则由最后一次 release 关闭。
+         */
+        private void retire() {
+            closing = true;
+            if (inFlight.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+    }
+
+    /**
+     * 端口变化时的回调，added 为 true 表示开始监听，false 表示已停止监听。
+     */
+    public interface PortCallback {
+        void changed(int port, boolean added);
+    }
+
+    private final ServerSettings settings;
+    private final BufferPool bufferPool;
+    private final Receiver receiver;
+    private final PortCallback callback;
+    private final Consumer<String> errors;
+    private final Selector selector;
+    private final Map<Integer, Port> ports = new HashMap<>();
+    // 最近一次成功绑定的主端口，新的主端口绑定失败时继续监听它
+    private int primary = -1;
+    private volatile boolean dirty = true;
+    private volatile boolean running = true;
+
+    /**
+     * errors 用于报告无法绑定端口等只影响单个端口的错误。
+     */
+    public MultiPortListener(ServerSettings settings, BufferPool bufferPool, Receiver receiver, PortCallback callback,
+                             Consumer<String> errors) throws IOException {
+        this.settings = settings;
+        this.bufferPool = bufferPool;
+        this.receiver = receiver;
+        this.callback = callback;
+        this.errors = errors;
+        this.selector = Selector.open();
+        settings.addPortListener(this::requestUpdate);
+    }
+
+    /**
+     * 端口集合变化后调用，可在任意线程调用。
+     */
+    public void requestUpdate() {
+        dirty = true;
+        selector.wakeup();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * 选择循环，在调用线程上运行直到 {@link #stop()}。
+     */
+    public void run() throws IOException {
+        try {
+            while (running) {
+                if (dirty) {
+                    dirty = false;
+                    updatePorts(settings.getListeningPorts(), settings.getPort());
+                }
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        drain((Port) key.attachment(), MAX_BATCH);
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // 已停止
+        } finally {
+            for (Port port : ports.values()) {
+                port.retire();
+            }
+            ports.clear();
+            selector.close();
+        }
+    }
+
+    /**
+     * 先绑定新端口再移除旧端口，切换主端口时不存在没有端口在监听的间隙。新的主端口无法绑定（如已被其他程序占用）时
+     * 保留原来的主端口，下一次端口变化时再重试。
+     */
+    private void updatePorts(Set<Integer> wanted, int wantedPrimary) {
+        for (int number : wanted) {
+            if (!ports.containsKey(number)) {
+                addPort(number);
+            }
+        }
+        int keep = -1;
+        if (ports.containsKey(wantedPrimary)) {
+            primary = wantedPrimary;
+        } else if (ports.containsKey(primary)) {
+            keep = primary;
+            errors.accept("无法切换到端口 " + wantedPrimary + "，继续监听端口 " + primary);
+        }
+        Iterator<Map.Entry<Integer, Port>> it = ports.entrySet().iterator();
+        while (it.hasNext()) {
+            Port port = it.next().getValue();
+            if (!wanted.contains(port.number) && port.number != keep) {
+                it.remove();
+                removePort(port);
+            }
+        }
+    }
+
+    private void addPort(int number) {
+        DatagramChannel channel = null;
+        try {
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(number));
+            channel.configureBlocking(false);
+            Port port = new Port(number, channel);
+            channel.register(selector, SelectionKey.OP_READ, port);
+            ports.put(number, port);
+            callback.changed(number, true);
+        } catch (IOException e) {
+            if (channel != null) {
+                new Port(number, channel).close();
+            }
+            errors.accept("无法监听端口 " + number + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 先处理接收缓冲区中剩余的数据包，再取消注册并在在途数据包处理完后关闭。
+     */
+    private void removePort(Port port) {
+        try {
+            drain(port, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            errors.accept("读取端口 " + port.number + " 剩余数据包错误: " + e.getMessage());
+        }
+        SelectionKey key = port.channel.keyFor(selector);
+        if (key != null) {
+            key.cancel();
+        }
+        port.retire();
+        callback.changed(port.number, false);
+    }
+
+    /**
+     * 读取最多 limit 个数据包，没有更多数据包时返回。每次就绪最多读取 MAX_BATCH 个，避免单个端口占满循环。
+     */
+    private void drain(Port port, int limit) throws IOException {
+        for (int i = 0; i < limit; i++) {
+            ByteBuffer buffer = bufferPool.acquire();
+            InetSocketAddress source = (InetSocketAddress) port.channel.receive(buffer);
+            if (source == null) {
+                bufferPool.release(buffer);
+                return;
+            }
+            long received = System.nanoTime();
+            buffer.flip();
+            receiver.receive(port, source, buffer, received);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package udpping;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据包处理执行器，统一平台线程池与虚拟线程两种执行模式。
+ */
+public interface PacketExecutor extends Executor {
+    /**
+     * 已接收但尚未处理完成的数据包数量。
+     */
+    int getQueueDepth();
+
+    int getCapacity();
+
+    int getActiveCount();
+
+    /**
+     * 为 true 时执行器可以廉价地阻塞，延迟可以直接在处理线程内 sleep 实现。
+     */
+    boolean isBlockingCheap();
+
+    List<Runnable> shutdownNow();
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+}
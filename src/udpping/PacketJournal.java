@@ -0,0 +1,316 @@
+package udpping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的数据包日志。每条记录定长 {@value #RECORD_SIZE} 字节，写入按段滚动的内存映射文件，
+ * 重启后历史记录仍在磁盘上。写入方用一次 getAndIncrement 认领记录位置，直接写映射内存，
+ * 最后以 release 语义写入提交标记，整个写路径没有锁和系统调用。
+ * <p>
+ * 段文件由后台线程提前映射：写入到当前段一半时唤醒该线程映射下一段，并删除超出保留数量的旧段。
+ * 写入方遇到尚未映射的段时放弃该条记录并计数，不会等待。
+ * <p>
+ * 记录格式（大端序）：
+ * <pre>
+ * 0  提交标记（高 16 位 0x4A52，低位为判定结果序号 + 1），0 表示未写入
+ * 4  地址长度（0、4 或 16）  5 保留  6 源端口
+ * 8  时间（纪元纳秒）
+ * 16 负载中的序号，无法解析时为 -1
+ * 24 源地址，16 字节
+ * 40 负载原始长度  42 保存的负载长度  44 附加值（模拟延迟的毫秒数）
+ * 48 负载前 {@value #MAX_PAYLOAD} 字节
+ * </pre>
+ */
+public class PacketJournal implements Closeable {
+    public enum Verdict {
+        REPLIED("已回复"), DROPPED("模拟丢失"), DELAYED("模拟延迟"), SHED("过载丢弃"), RATE_LIMITED("限速丢弃"),
+        MALFORMED("格式错误"), SEND_FAILED("发送失败");
+
+        private final String label;
+
+        Verdict(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final int RECORD_SIZE = 128;
+    public static final int MAX_PAYLOAD = 80;
+    static final int COMMIT_MARK = 0x4A520000;
+    static final int PAYLOAD = RECORD_SIZE - MAX_PAYLOAD;
+    static final String SUFFIX = ".journal";
+    private static final byte[] EMPTY_ADDRESS = new byte[0];
+
+    /** {@link #read} 的返回值：记录已读出。 */
+    public static final int READ = 1;
+    /** {@link #read} 的返回值：位置已被认领但尚未提交。 */
+    public static final int PENDING = 0;
+    /** {@link #read} 的返回值：记录所在的段已不在内存中（已滚动删除或写入时被放弃）。 */
+    public static final int MISSING = -1;
+
+    private static final int MAPPED_SLOTS = 4;
+    private static final long ROLL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final VarHandle STATE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final class Segment {
+        final long number;
+        final MappedByteBuffer buffer;
+
+        Segment(long number, MappedByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final EpochClock clock;
+    private final AtomicReferenceArray<Segment> mapped = new AtomicReferenceArray<>(MAPPED_SLOTS);
+    private final AtomicLong next;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread roller;
+    private long oldest;
+    private volatile boolean closed;
+
+    /**
+     * segmentBytes 为每个段文件的大小，向下取整为记录长度的整数倍；maxSegments 为磁盘上保留的段数。
+     * 已有段文件时从最大编号的下一段开始写入，旧记录保持不变。
+     */
+    public PacketJournal(Path directory, long segmentBytes, int maxSegments, EpochClock clock) throws IOException {
+        if (segmentBytes < RECORD_SIZE * 2L || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("数据包日志段大小必须在 " + RECORD_SIZE * 2 + " 字节到 2 GB 之间");
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("数据包日志保留段数必须大于1");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = (int) (segmentBytes / RECORD_SIZE);
+        this.maxSegments = maxSegments;
+        this.clock = clock;
+        Files.createDirectories(directory);
+        long first = Long.MAX_VALUE;
+        long last = -1;
+        for (Path file : segmentFiles(directory)) {
+            long number = segmentNumber(file);
+            first = Math.min(first, number);
+            last = Math.max(last, number);
+        }
+        long start = last + 1;
+        oldest = last < 0 ? start : first;
+        next = new AtomicLong(start * recordsPerSegment);
+        map(start);
+        map(start + 1);
+        roller = new Thread(this::roll, "journal-roller");
+        roller.setDaemon(true);
+        roller.start();
+    }
+
+    /**
+     * 目录下按编号排序的段文件。文件名不是“编号.journal”的文件不属于日志，直接忽略。
+     */
+    static Path[] segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> segmentNumber(f) >= 0).sorted().toArray(Path[]::new);
+        }
+    }
+
+    /**
+     * 文件名不是段文件时返回 -1。
+     */
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format(Locale.ROOT, "%016d%s", number, SUFFIX));
+    }
+
+    private void map(long number) throws IOException {
+        int slot = (int) (number % MAPPED_SLOTS);
+        Segment current = mapped.get(slot);
+        if (current != null && current.number == number) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+            mapped.set(slot, new Segment(number, buffer));
+        }
+    }
+
+    private void roll() {
+        while (!closed) {
+            long current = next.get() / recordsPerSegment;
+            try {
+                map(current);
+                map(current + 1);
+                while (oldest <= current - maxSegments) {
+                    Files.deleteIfExists(segmentPath(oldest));
+                    oldest++;
+                }
+            } catch (IOException e) {
+                System.err.println("数据包日志滚动失败: " + e.getMessage());
+            }
+            LockSupport.parkNanos(ROLL_CHECK_NANOS);
+        }
+    }
+
+    private Segment segment(long index) {
+        long number = index / recordsPerSegment;
+        Segment segment = mapped.get((int) (number % MAPPED_SLOTS));
+        return segment != null && segment.number == number ? segment : null;
+    }
+
+    /**
+     * 追加一条记录，payload 为 null 时不保存负载。extra 为附加值，目前用于记录模拟延迟的毫秒数。
+     */
+    public void append(Verdict verdict, InetAddress address, int port, long sequence, ByteBuffer payload, int extra) {
+        long index = next.getAndIncrement();
+        ByteBuffer buffer = bufferFor(index);
+        if (buffer == null) {
+            return;
+        }
+        int offset = offsetOf(index);
+        int length = payload == null ? 0 : payload.remaining();
+        writeHeader(buffer, offset, address, port, sequence, length, extra);
+        if (length > 0) {
+            buffer.put(offset + PAYLOAD, payload, payload.position(), Math.min(length, MAX_PAYLOAD));
+        }
+        commit(buffer, offset, verdict);
+    }
+
+    public void append(Verdict verdict, InetAddress address, int port, long sequence, byte[] data, int dataOffset,
+                       int length, int extra) {
+        long index = next.getAndIncrement();
+        ByteBuffer buffer = bufferFor(index);
+        if (buffer == null) {
+            return;
+        }
+        int offset = offsetOf(index);
+        writeHeader(buffer, offset, address, port, sequence, length, extra);
+        buffer.put(offset + PAYLOAD, data, dataOffset, Math.min(length, MAX_PAYLOAD));
+        commit(buffer, offset, verdict);
+    }
+
+    /**
+     * 返回记录所在段的映射内存。写到段的一半时提前唤醒滚动线程；段尚未映射时放弃该记录。
+     */
+    private ByteBuffer bufferFor(long index) {
+        Segment segment = segment(index);
+        if (segment == null) {
+            dropped.increment();
+            LockSupport.unpark(roller);
+            return null;
+        }
+        if (index % recordsPerSegment == recordsPerSegment / 2) {
+            LockSupport.unpark(roller);
+        }
+        return segment.buffer;
+    }
+
+    private int offsetOf(long index) {
+        return (int) (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private void writeHeader(ByteBuffer buffer, int offset, InetAddress address, int port, long sequence, int length,
+                             int extra) {
+        byte[] bytes = address == null ? EMPTY_ADDRESS : address.getAddress();
+        buffer.put(offset + 4, (byte) bytes.length);
+        buffer.putShort(offset + 6, (short) port);
+        buffer.putLong(offset + 8, clock.toEpochNanos(System.nanoTime()));
+        buffer.putLong(offset + 16, sequence);
+        buffer.put(offset + 24, bytes);
+        buffer.putShort(offset + 40, (short) length);
+        buffer.putShort(offset + 42, (short) Math.min(length, MAX_PAYLOAD));
+        buffer.putInt(offset + 44, extra);
+    }
+
+    private void commit(ByteBuffer buffer, int offset, Verdict verdict) {
+        STATE.setRelease(buffer, offset, COMMIT_MARK | (verdict.ordinal() + 1));
+    }
+
+    /**
+     * 读取指定位置的记录，返回 {@link #READ}、{@link #PENDING} 或 {@link #MISSING}。
+     * 只能读取仍映射在内存中的最近几个段，更早的记录用 {@link JournalReader} 从文件读取。
+     */
+    public int read(long index, JournalRecord record) {
+        Segment segment = segment(index);
+        if (segment == null) {
+            return MISSING;
+        }
+        int offset = offsetOf(index);
+        int state = (int) STATE.getAcquire(segment.buffer, offset);
+        if (state == 0) {
+            return PENDING;
+        }
+        return record.load(segment.buffer, offset, state) ? READ : MISSING;
+    }
+
+    /**
+     * 下一条记录的位置，即已认领的记录总数（含启动前的段）。
+     */
+    public long getPosition() {
+        return next.get();
+    }
+
+    /**
+     * 因段尚未映射而放弃的记录数。
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 停止滚动线程并等待其退出，之后不会再映射或删除段文件，再把已映射的段刷到磁盘。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(roller);
+        try {
+            roller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < MAPPED_SLOTS; i++) {
+            Segment segment = mapped.get(i);
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package udpping;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 一个抽样数据包从收到到回复（或被丢弃）的 JFR 事件，事件时长为整个生命周期，各阶段耗时分别记录。
+ * 事件对象随数据包在接收线程、工作线程和发送线程之间传递，每个阶段结束时在当前线程上打点，
+ * 阶段耗时为相邻两次打点的差值，同一时刻只有一个线程持有事件对象。抽样见 {@link PacketTracer}。
+ */
+@Name(PacketLifecycleEvent.NAME)
+@Label("数据包生命周期")
+@Category("UDP Ping")
+@StackTrace(false)
+public class PacketLifecycleEvent extends Event {
+    public static final String NAME = "udpping.PacketLifecycle";
+
+    @Label("来源地址")
+    String source;
+
+    @Label("来源端口")
+    int sourcePort;
+
+    @Label("序号")
+    @Description("负载中的序号，无法解析时为 -1")
+    long sequence;
+
+    @Label("结果")
+    @Description("PacketJournal.Verdict 的名称")
+    String outcome;
+
+    @Label("回复份数")
+    int copies;
+
+    @Label("接收循环")
+    @Description("收到数据包后更新统计与限速判断的耗时，不含网络损伤")
+    @Timespan
+    long receive;
+
+    @Label("网络损伤")
+    @Description("执行网络损伤流水线的耗时")
+    @Timespan
+    long impairment;
+
+    @Label("模拟延迟")
+    @Timespan
+    long simulatedDelay;
+
+    @Label("执行器排队")
+    @Description("交给执行器（延迟的数据包为计划发送时间）到工作线程开始处理的耗时")
+    @Timespan
+    long queue;
+
+    @Label("处理")
+    @Description("解析负载、更新界面到开始发送（或放入发送队列）的耗时")
+    @Timespan
+    long handle;
+
+    @Label("发送排队")
+    @Description("在独立发送阶段队列中等待的耗时，未开启时为 0")
+    @Timespan
+    long sendQueue;
+
+    @Label("发送")
+    @Timespan
+    long send;
+
+    private transient long received;
+    private transient long mark;
+
+    void received(long nanos) {
+        received = nanos;
+        mark = nanos;
+    }
+
+    void impaired(long nanos) {
+        impairment += nanos;
+    }
+
+    /**
+     * 接收线程判定完毕、即将交给执行器时调用，start 为计划处理时间（未延迟时等于收到时间）。
+     */
+    void admitted(long now, long start, int copies) {
+        this.copies = copies;
+        receive = Math.max(0, now - received - impairment);
+        simulatedDelay = Math.max(0, start - now);
+        mark = Math.max(now, start);
+    }
+
+    void handling(long now) {
+        queue = Math.max(0, now - mark);
+        mark = now;
+    }
+
+    /**
+     * 处理完毕，即将发送或放入发送队列。
+     */
+    void handled(long now) {
+        handle = now - mark;
+        mark = now;
+    }
+
+    /**
+     * 发送线程从队列取出回复时调用。
+     */
+    void sending(long now) {
+        sendQueue = now - mark;
+        mark = now;
+    }
+
+    /**
+     * 结束生命周期并提交事件。回复与发送失败的数据包以最后一次打点到现在的耗时作为发送耗时。
+     */
+    void finish(PacketJournal.Verdict verdict, long now) {
+        outcome = verdict.name();
+        if (verdict == PacketJournal.Verdict.REPLIED || verdict == PacketJournal.Verdict.SEND_FAILED) {
+            send = now - mark;
+        }
+        commit();
+    }
+}
@@ -0,0 +1,114 @@
+package udpping;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * 交接环形缓冲区中预先分配的槽位。槽位保存一个待处理数据包的全部引用，由接收线程填写、工作线程处理，
+ * 处理完成后清空引用以便复用；阻塞 socket 模式下槽位保留上一次的 DatagramPacket，供接收线程交换复用。
+ */
+public class PacketSlot {
+    long sequence;
+    private Statistic source;
+    private Runnable task;
+    private DatagramSocket socket;
+    private DatagramPacket packet;
+    private DatagramChannel channel;
+    private InetSocketAddress address;
+    private ByteBuffer buffer;
+    private long start;
+    private int copies;
+    private PacketLifecycleEvent trace;
+
+    /**
+     * 填写阻塞 socket 模式的数据包，返回槽位中上一次已处理完毕的 DatagramPacket（可能为 null）。
+     */
+    DatagramPacket setPacket(Statistic source, DatagramSocket socket, DatagramPacket packet, long start,
+                             int copies, PacketLifecycleEvent trace) {
+        DatagramPacket previous = this.packet;
+        this.start = start;
+        this.copies = copies;
+        this.trace = trace;
+        this.source = source;
+        this.socket = socket;
+        this.packet = packet;
+        return previous;
+    }
+
+    void setBuffer(Statistic source, DatagramChannel channel, InetSocketAddress address, ByteBuffer buffer, long start,
+                   int copies, PacketLifecycleEvent trace) {
+        this.start = start;
+        this.copies = copies;
+        this.trace = trace;
+        this.source = source;
+        this.channel = channel;
+        this.address = address;
+        this.buffer = buffer;
+    }
+
+    void setTask(Runnable task) {
+        this.task = task;
+    }
+
+    void clear() {
+        source = null;
+        task = null;
+        socket = null;
+        channel = null;
+        address = null;
+        buffer = null;
+        trace = null;
+    }
+
+    public Statistic getSource() {
+        return source;
+    }
+
+    public Runnable getTask() {
+        return task;
+    }
+
+    public DatagramSocket getSocket() {
+        return socket;
+    }
+
+    public DatagramPacket getPacket() {
+        return packet;
+    }
+
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 数据包收到的时间（System.nanoTime），用于统计处理耗时。
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * 需要发送的回复份数，大于 1 表示模拟重复。
+     */
+    public int getCopies() {
+        return copies;
+    }
+
+    /**
+     * 抽样跟踪的生命周期事件，未抽样时为 null。
+     */
+    public PacketLifecycleEvent getTrace() {
+        return trace;
+    }
+}
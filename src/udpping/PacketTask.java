@@ -0,0 +1,34 @@
+package udpping;
+
+/**
+ * 交给工作线程处理的数据包任务，记录来源以便按来源统计排队与过载丢弃。
+ */
+public class PacketTask implements Runnable {
+    private final Statistic source;
+    private final Runnable work;
+    private final Runnable release;
+
+    public PacketTask(Statistic source, Runnable work, Runnable release) {
+        this.source = source;
+        this.work = work;
+        this.release = release;
+    }
+
+    public Statistic getSource() {
+        return source;
+    }
+
+    @Override
+    public void run() {
+        work.run();
+    }
+
+    /**
+     * 任务被丢弃而不会执行时调用，释放任务持有的资源。
+     */
+    public void discard() {
+        if (release != null) {
+            release.run();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按比例抽样数据包并创建 {@link PacketLifecycleEvent}。没有正在进行的 JFR 录制（或该事件被关闭）时
+ * 每个数据包只多一次 isEnabled 判断，不抽随机数也不分配对象；未抽中的数据包同样返回 null，后续各阶段据此跳过打点。
+ * <p>
+ * 录制方式示例：java -XX:StartFlightRecording=filename=ping.jfr -jar udp-ping-server.jar --trace-sample=100，
+ * 之后用 {@link TraceAnalyzer} 汇总各阶段耗时。
+ */
+public class PacketTracer {
+    private static final PacketLifecycleEvent PROBE = new PacketLifecycleEvent();
+
+    private final int sampleInterval;
+    private final ThreadLocal<PingPayload> payloads = ThreadLocal.withInitial(PingPayload::new);
+
+    /**
+     * sampleInterval 为 N 时平均每 N 个数据包抽样一个，0 表示不抽样。
+     */
+    public PacketTracer(int sampleInterval) {
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * 收到数据包后立即调用，返回 null 表示不跟踪该数据包。received 为收到时间（System.nanoTime）。
+     */
+    public PacketLifecycleEvent sample(InetAddress address, int port, ByteBuffer payload, long received) {
+        if (sampleInterval <= 0 || !PROBE.isEnabled()
+                || (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0)) {
+            return null;
+        }
+        PacketLifecycleEvent event = new PacketLifecycleEvent();
+        event.begin();
+        event.received(received);
+        event.source = address.getHostAddress();
+        event.sourcePort = port;
+        PingPayload parsed = payloads.get();
+        event.sequence = parsed.parse(payload) ? parsed.getSequenceNumber() : -1;
+        return event;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+}
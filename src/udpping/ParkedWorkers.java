@@ -0,0 +1,47 @@
+package udpping;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 按 {@link HandoffRing.WaitStrategy#PARK} 策略无限期休眠的消费者线程，由生产者在发布后唤醒。
+ * <p>
+ * 消费者先登记再检查一次是否有可处理的数据，生产者先发布再取出登记的线程，两边之间都有完整的内存屏障，
+ * 因此不会出现数据已发布而所有消费者都在休眠的情况。没有线程休眠时生产者只多一次屏障和一次读取。
+ */
+final class ParkedWorkers {
+    private final ConcurrentLinkedDeque<Thread> parked = new ConcurrentLinkedDeque<>();
+    private final BooleanSupplier ready;
+
+    /**
+     * ready 返回 true 表示有数据可处理或已停止，消费者不应休眠。
+     */
+    ParkedWorkers(BooleanSupplier ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * 消费者没有可处理的数据时调用，返回后应重新检查队列。
+     */
+    void park() {
+        Thread self = Thread.currentThread();
+        parked.push(self);
+        if (!ready.getAsBoolean()) {
+            LockSupport.park(this);
+        }
+        parked.remove(self);
+    }
+
+    /**
+     * 生产者发布数据后调用，唤醒一个休眠的消费者。
+     */
+    void wakeOne() {
+        VarHandle.fullFence();
+        Thread thread = parked.poll();
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
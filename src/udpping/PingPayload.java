@@ -0,0 +1,178 @@
+package udpping;
+
+import java.nio.ByteBuffer;
+
+/**
+ * "PingUDP &lt;seq&gt; &lt;millis&gt;\r\n" 负载的字节级解析器。
+ * 作为可复用的享元使用：直接从接收缓冲区读取字段到基本类型，不创建字符串，格式错误时返回 false 而不抛异常。
+ * <p>
+ * 以魔数开头的负载按二进制时间戳协议解析（大端序，至少 40 字节，之后可以填充）：
+ * <pre>
+ * 0  魔数 0x8F 'P' 'T' 'S'
+ * 4  版本 1，其余 3 字节保留
+ * 8  序号
+ * 16 客户端发送时间（纪元纳秒）
+ * 24 服务端收到时间（纪元纳秒，由服务端写入）
+ * 32 服务端发出时间（纪元纳秒，由服务端写入）
+ * </pre>
+ * 服务端用 {@link #stamp} 写入两个时间后原样回显，客户端据此把往返时间拆分为去程、服务端驻留与回程。
+ */
+public class PingPayload {
+    private static final byte[] TAG = {'P', 'i', 'n', 'g', 'U', 'D', 'P'};
+    private static final int MAX_DIGITS = 18;
+    public static final int BINARY_MAGIC = 0x8F505453;
+    public static final int BINARY_VERSION = 1;
+    public static final int BINARY_LENGTH = 40;
+    private static final int RECEIVE_OFFSET = 24;
+    private static final int TRANSMIT_OFFSET = 32;
+
+    private long sequenceNumber;
+    private long timestamp;
+    private boolean valid;
+    private boolean binary;
+    private int cursor;
+    // 当前解析的数据源，二者只有一个非空，避免为字节数组再包装一个 ByteBuffer
+    private byte[] array;
+    private ByteBuffer buffer;
+
+    public boolean parse(ByteBuffer buffer) {
+        this.array = null;
+        this.buffer = buffer;
+        return parse(buffer.position(), buffer.limit());
+    }
+
+    public boolean parse(byte[] data, int offset, int length) {
+        this.array = data;
+        this.buffer = null;
+        return parse(offset, offset + length);
+    }
+
+    private byte byteAt(int index) {
+        return array != null ? array[index] : buffer.get(index);
+    }
+
+    private boolean parse(int start, int end) {
+        valid = false;
+        binary = false;
+        if (end - start >= 4 && byteAt(start) == (byte) (BINARY_MAGIC >>> 24)) {
+            return parseBinary(start, end);
+        }
+        if (end - start < TAG.length + 4) {
+            return false;
+        }
+        for (int i = 0; i < TAG.length; i++) {
+            if (byteAt(start + i) != TAG[i]) {
+                return false;
+            }
+        }
+        cursor = start + TAG.length;
+        if (byteAt(cursor++) != ' ') {
+            return false;
+        }
+        sequenceNumber = readNumber(end);
+        if (sequenceNumber < 0 || cursor >= end || byteAt(cursor++) != ' ') {
+            return false;
+        }
+        timestamp = readNumber(end);
+        if (timestamp < 0) {
+            return false;
+        }
+        // 时间戳之后只允许出现换行符或空白
+        for (int i = cursor; i < end; i++) {
+            byte b = byteAt(i);
+            if (b != '\r' && b != '\n' && b != ' ') {
+                return false;
+            }
+        }
+        valid = true;
+        return true;
+    }
+
+    private boolean parseBinary(int start, int end) {
+        // 前 8 字节的高 4 字节为魔数，紧接着是版本号
+        if (end - start < BINARY_LENGTH || (int) (readLong(start) >>> 32) != BINARY_MAGIC
+                || byteAt(start + 4) != BINARY_VERSION) {
+            return false;
+        }
+        sequenceNumber = readLong(start + 8);
+        timestamp = readLong(start + 16) / 1_000_000;
+        binary = true;
+        valid = true;
+        return true;
+    }
+
+    private long readLong(int index) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (byteAt(index + i) & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * 把服务端收到与发出的时间（纪元纳秒）写入二进制负载，offset 为负载起始位置。
+     */
+    public static void stamp(byte[] data, int offset, long receiveNanos, long transmitNanos) {
+        writeLong(data, offset + RECEIVE_OFFSET, receiveNanos);
+        writeLong(data, offset + TRANSMIT_OFFSET, transmitNanos);
+    }
+
+    public static void stamp(ByteBuffer buffer, long receiveNanos, long transmitNanos) {
+        buffer.putLong(buffer.position() + RECEIVE_OFFSET, receiveNanos);
+        buffer.putLong(buffer.position() + TRANSMIT_OFFSET, transmitNanos);
+    }
+
+    private static void writeLong(byte[] data, int index, long value) {
+        for (int i = 7; i >= 0; i--) {
+            data[index + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private long readNumber(int end) {
+        long value = 0;
+        int digits = 0;
+        while (cursor < end) {
+            int d = byteAt(cursor) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            if (++digits > MAX_DIGITS) {
+                return -1;
+            }
+            value = value * 10 + d;
+            cursor++;
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * 是否为二进制时间戳协议。
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * 客户端发送时间，毫秒。二进制协议中由纳秒换算。
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        if (!valid) {
+            return "{}";
+        }
+        return "{PingUDP=PingUDP, SequenceNumber=" + sequenceNumber + ", TimeStamp=" + timestamp + "}";
+    }
+}
@@ -0,0 +1,83 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按来源限速的令牌桶，使用 GCRA（通用信元速率算法）实现：每个来源只保存一个“理论到达时间”，
+ * 令牌在检查时按时间差惰性补充，通过 CAS 更新，热路径上没有锁，也不需要后台补充线程。
+ * 来源以二进制的 InetAddress（或 InetSocketAddress）为键，长时间空闲的桶由 {@link #evictIdle()} 定期清除。
+ */
+public class RateLimiter {
+    public enum KeyMode {
+        IP, PORT;
+
+        public static KeyMode parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final KeyMode keyMode;
+    private final long interval;
+    private final long tolerance;
+
+    /**
+     * rate 为每个来源每秒允许的数据包数，burst 为允许的突发包数。
+     */
+    public RateLimiter(int rate, int burst, KeyMode keyMode) {
+        if (rate < 1 || burst < 1) {
+            throw new IllegalArgumentException("限速速率和突发量必须大于0");
+        }
+        this.keyMode = keyMode;
+        this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.tolerance = interval * (burst - 1);
+    }
+
+    /**
+     * 返回 true 表示允许通过，false 表示超出限速应丢弃。
+     */
+    public boolean tryAcquire(InetAddress address, int port) {
+        Object key = keyMode == KeyMode.IP ? address : new InetSocketAddress(address, port);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            AtomicLong created = new AtomicLong(Long.MIN_VALUE);
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long tat = bucket.get();
+            long start = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+            if (start - now > tolerance) {
+                return false;
+            }
+            if (bucket.compareAndSet(tat, start + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 理论到达时间早于当前时间即表示桶已装满，再空闲一段时间后即可安全移除，重新出现的来源会得到一个满桶。
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(e -> {
+            long tat = e.getValue().get();
+            return tat == Long.MIN_VALUE || now - tat > IDLE_NANOS;
+        });
+    }
+
+    public int getTrackedSources() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,414 @@
+package udpping;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 独立的回复发送阶段。工作线程把回复拷贝进预先分配的描述符并放入无锁环（Vyukov 有界多生产者多消费者队列），
+ * 由少量发送线程一次 CAS 认领一批描述符依次发送，工作线程不再在同一个 socket 上争用发送锁。
+ * 描述符自带缓冲区，接收缓冲区和 DatagramPacket 仍由调用方按原来的方式归还或复用。
+ * <p>
+ * NIO 模式通过 DatagramChannel 发送，阻塞 socket 模式下没有通道可用，发送线程调用 DatagramSocket.send。
+ * 发送线程直接使用接收所在的通道，只有 selector 引擎的通道是非阻塞的：发送缓冲区已满时短暂自旋重试，
+ * 仍失败则放弃该回复并计数。nio、reuseport 与分片模式的通道以及 socket 模式都是阻塞的，
+ * 发送缓冲区已满时发送线程会阻塞在内核里，此时由发送队列满来体现背压。队列满时回复被丢弃并计数。
+ */
+public class SenderStage {
+    static final int SEND_RETRIES = 64;
+    private static final long[] BATCH_BOUNDS = {1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+    /**
+     * 发送环中的一个回复描述符。
+     */
+    public static final class Reply {
+        long sequence;
+        private final byte[] data;
+        private final ByteBuffer buffer;
+        private final DatagramPacket packet;
+        private int length;
+        private DatagramChannel channel;
+        private DatagramSocket socket;
+        private InetSocketAddress address;
+        private Statistic source;
+        private long start;
+        private int copies;
+        private long receiveEpochNanos;
+        private boolean binary;
+        private Runnable completion;
+        private PacketLifecycleEvent trace;
+
+        private Reply(int capacity) {
+            data = new byte[capacity];
+            buffer = ByteBuffer.wrap(data);
+            packet = new DatagramPacket(data, capacity);
+        }
+
+        public Statistic getSource() {
+            return source;
+        }
+
+        /**
+         * 数据包收到的时间（System.nanoTime），用于统计处理耗时。
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public int getCopies() {
+            return copies;
+        }
+
+        /**
+         * 抽样跟踪的生命周期事件，未抽样时为 null。
+         */
+        public PacketLifecycleEvent getTrace() {
+            return trace;
+        }
+
+        /**
+         * 回复的目标地址，即请求的来源。
+         */
+        public InetSocketAddress getAddress() {
+            return address != null ? address : (InetSocketAddress) packet.getSocketAddress();
+        }
+
+        /**
+         * 回复的内容（二进制协议已写入时间戳），只在回调期间有效。
+         */
+        public ByteBuffer getPayload() {
+            return buffer.clear().limit(length);
+        }
+
+        void clear() {
+            channel = null;
+            socket = null;
+            address = null;
+            source = null;
+            completion = null;
+            trace = null;
+        }
+    }
+
+    private final Reply[] replies;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final HandoffRing.WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final EpochClock clock;
+    private final Consumer<Reply> onSent;
+    private final Consumer<Reply> onFailed;
+    private final Consumer<String> errors;
+    private final ParkedWorkers parked;
+    private final Thread[] senders;
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder sendFailed = new LongAdder();
+    private final LongAdder batched = new LongAdder();
+    private final LongAdder[] batchBuckets = new LongAdder[BATCH_BOUNDS.length + 1];
+    private final AtomicInteger busy = new AtomicInteger();
+    private volatile boolean stopped;
+
+    /**
+     * onSent 在回复发出后、onFailed 在发送失败后于发送线程上回调，用于统计处理耗时和记录日志；
+     * errors 用于报告发送异常。容量向上取整为 2 的幂。
+     */
+    public SenderStage(int threads, int capacity, int bufferSize, HandoffRing.WaitStrategy waitStrategy, int batchSize,
+                       EpochClock clock, Consumer<Reply> onSent, Consumer<Reply> onFailed, Consumer<String> errors) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        replies = new Reply[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            replies[i] = new Reply(bufferSize);
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        for (int i = 0; i < batchBuckets.length; i++) {
+            batchBuckets[i] = new LongAdder();
+        }
+        this.waitStrategy = waitStrategy;
+        this.batchSize = Math.max(1, Math.min(batchSize, size));
+        this.clock = clock;
+        this.onSent = onSent;
+        this.onFailed = onFailed;
+        this.errors = errors;
+        this.parked = waitStrategy.newParkedWorkers(() -> stopped || hasWork());
+        senders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            senders[i] = new Thread(this::work, "sender-" + i);
+            senders[i].setDaemon(true);
+            senders[i].start();
+        }
+    }
+
+    private Reply claim() {
+        while (true) {
+            long pos = tail.get();
+            long diff = sequences.get((int) (pos & mask)) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    Reply reply = replies[(int) (pos & mask)];
+                    reply.sequence = pos;
+                    return reply;
+                }
+            } else if (diff < 0) {
+                queueFull.increment();
+                return null;
+            }
+        }
+    }
+
+    private void publish(Reply reply) {
+        sequences.lazySet((int) (reply.sequence & mask), reply.sequence + 1);
+        if (parked != null) {
+            parked.wakeOne();
+        }
+    }
+
+    private boolean hasWork() {
+        long pos = head.get();
+        return sequences.get((int) (pos & mask)) == pos + 1;
+    }
+
+    private Reply claim(Statistic source, long start, int copies, boolean binary, long receiveEpochNanos,
+                        PacketLifecycleEvent trace) {
+        Reply reply = claim();
+        if (reply == null) {
+            return null;
+        }
+        reply.trace = trace;
+        reply.source = source;
+        reply.start = start;
+        reply.copies = copies;
+        reply.binary = binary;
+        reply.receiveEpochNanos = receiveEpochNanos;
+        return reply;
+    }
+
+    /**
+     * 排队一个阻塞 socket 模式的回复，目标地址取自 packet。队列已满时返回 false。
+     * binary 为 true 时发送线程在发出前写入时间戳，receiveEpochNanos 为服务端收到时间。
+     */
+    public boolean send(Statistic source, DatagramSocket socket, DatagramPacket packet, long start, int copies,
+                        boolean binary, long receiveEpochNanos, PacketLifecycleEvent trace) {
+        Reply reply = claim(source, start, copies, binary, receiveEpochNanos, trace);
+        if (reply == null) {
+            return false;
+        }
+        reply.length = Math.min(packet.getLength(), reply.data.length);
+        System.arraycopy(packet.getData(), packet.getOffset(), reply.data, 0, reply.length);
+        reply.socket = socket;
+        reply.packet.setSocketAddress(packet.getSocketAddress());
+        publish(reply);
+        return true;
+    }
+
+    /**
+     * 排队一个 NIO 模式的回复，拷贝 buffer 中 position 到 limit 的数据，不改变 buffer 的位置。
+     * completion 不为 null 时在发送完成或失败后于发送线程上调用，用于释放通道的在途计数。
+     */
+    public boolean send(Statistic source, DatagramChannel channel, InetSocketAddress address, ByteBuffer buffer,
+                        long start, int copies, boolean binary, long receiveEpochNanos, Runnable completion,
+                        PacketLifecycleEvent trace) {
+        Reply reply = claim(source, start, copies, binary, receiveEpochNanos, trace);
+        if (reply == null) {
+            return false;
+        }
+        reply.length = Math.min(buffer.remaining(), reply.data.length);
+        buffer.get(buffer.position(), reply.data, 0, reply.length);
+        reply.channel = channel;
+        reply.address = address;
+        reply.completion = completion;
+        publish(reply);
+        return true;
+    }
+
+    private void work() {
+        int idle = 0;
+        while (!stopped) {
+            if (drain() > 0) {
+                idle = 0;
+            } else {
+                waitStrategy.idle(idle++, parked);
+            }
+        }
+    }
+
+    /**
+     * 用一次 CAS 认领从 head 开始最多 batchSize 个已发布的连续描述符，依次发送后逐个归还。
+     */
+    private int drain() {
+        long pos;
+        int count;
+        while (true) {
+            pos = head.get();
+            long diff = sequences.get((int) (pos & mask)) - (pos + 1);
+            if (diff < 0) {
+                return 0;
+            }
+            if (diff > 0) {
+                continue;
+            }
+            count = 1;
+            while (count < batchSize && sequences.get((int) ((pos + count) & mask)) == pos + count + 1) {
+                count++;
+            }
+            if (head.compareAndSet(pos, pos + count)) {
+                break;
+            }
+        }
+        recordBatch(count);
+        busy.incrementAndGet();
+        try {
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((pos + i) & mask);
+                Reply reply = replies[index];
+                if (reply.trace != null) {
+                    reply.trace.sending(System.nanoTime());
+                }
+                try {
+                    if (transmit(reply)) {
+                        onSent.accept(reply);
+                    } else {
+                        sendFailed.increment();
+                        onFailed.accept(reply);
+                    }
+                } finally {
+                    if (reply.completion != null) {
+                        reply.completion.run();
+                    }
+                    reply.clear();
+                    sequences.lazySet(index, pos + i + replies.length);
+                }
+            }
+        } finally {
+            busy.decrementAndGet();
+        }
+        return count;
+    }
+
+    /**
+     * 发出回复的全部副本，发送缓冲区持续已满或发送异常时返回 false。
+     */
+    private boolean transmit(Reply reply) {
+        try {
+            return transmitCopies(reply);
+        } catch (IOException | RuntimeException e) {
+            errors.accept("发送响应错误: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean transmitCopies(Reply reply) throws IOException {
+        if (reply.binary) {
+            PingPayload.stamp(reply.data, 0, reply.receiveEpochNanos, clock.toEpochNanos(System.nanoTime()));
+        }
+        for (int i = 0; i < reply.copies; i++) {
+            if (reply.channel != null) {
+                if (!sendBuffer(reply)) {
+                    return false;
+                }
+            } else {
+                reply.packet.setLength(reply.length);
+                reply.socket.send(reply.packet);
+            }
+        }
+        return true;
+    }
+
+    private boolean sendBuffer(Reply reply) throws IOException {
+        for (int attempt = 0; attempt < SEND_RETRIES; attempt++) {
+            reply.buffer.clear().limit(reply.length);
+            if (reply.channel.send(reply.buffer, reply.address) > 0) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        return false;
+    }
+
+    private void recordBatch(int count) {
+        batched.add(count);
+        int bucket = 0;
+        while (bucket < BATCH_BOUNDS.length && count > BATCH_BOUNDS[bucket]) {
+            bucket++;
+        }
+        batchBuckets[bucket].increment();
+    }
+
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return replies.length;
+    }
+
+    public int getActiveCount() {
+        return busy.get();
+    }
+
+    /**
+     * 队列已满而丢弃的回复数。
+     */
+    public long getQueueFull() {
+        return queueFull.sum();
+    }
+
+    /**
+     * 发送失败（非阻塞通道发送缓冲区持续已满或发送异常）的回复数。
+     */
+    public long getSendFailed() {
+        return sendFailed.sum();
+    }
+
+    /**
+     * 各批次描述符数之和，即已取出的回复数。
+     */
+    public long getBatchedReplies() {
+        return batched.sum();
+    }
+
+    /**
+     * 批量大小分布的桶上界，最后一个桶为无上界。
+     */
+    public static long[] getBatchBounds() {
+        return BATCH_BOUNDS.clone();
+    }
+
+    /**
+     * 各批量大小桶的计数（非累积），长度比 {@link #getBatchBounds()} 多 1。
+     */
+    public long[] getBatchCounts() {
+        long[] counts = new long[batchBuckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = batchBuckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 停止发送线程，最多等待 timeout 让已排队的回复发完。
+     */
+    public void stop(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getQueueDepth() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        stopped = true;
+        for (Thread sender : senders) {
+            LockSupport.unpark(sender);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package udpping;
+
+import com.formdev.flatlaf.FlatLightLaf;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.awt.event.ItemEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ServerGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final int LOG_RING_CAPACITY = 8192;
+    private static final int LOG_FRAME_MILLIS = 33;
+    private static final int LOG_BATCH = 2048;
+
+    private JTextArea textArea;
+    private JTextArea logArea;
+    private JTextField portField;
+    private JCheckBox lossCheckbox;
+    private JCheckBox delayCheckbox;
+    private JTextField delayField;
+    private JButton changePortButton;
+    private JButton changeDelayButton;
+    private JLabel serverInfoLabel;
+    private JLabel metricsLabel;
+    private JTextField lossRateField;
+    private JButton changeLossRateButton;
+    private JTable statsTable;
+    private final StatsTableModel statsTableModel = new StatsTableModel();
+    private final LogRing logRing = new LogRing(LOG_RING_CAPACITY);
+    private final int maxLines;
+    private final StringBuilder messageBatch = new StringBuilder();
+    private final StringBuilder logBatch = new StringBuilder();
+    private JLabel droppedLogLabel;
+    private long shownDropped;
+    private final ServerSettings settings;
+    // 只在事件分发线程上读写
+    private boolean showingSettings;
+    private PacketJournal journal;
+    private final JournalRecord journalRecord = new JournalRecord();
+    private long journalCursor;
+    private long journalStalledAt = -1;
+
+    /**
+     * 初始化外观并打开窗口。所有 Swing 相关的类只在这里及之后加载，无界面模式不会触及。
+     */
+    public static ServerGUI open(ServerSettings settings, int maxLines, int statsRefreshMillis, Runnable onClose) {
+        try {
+            UIManager.setLookAndFeel(new FlatLightLaf());
+        } catch (Exception ex) {
+            ErrorDialog.showError("Failed to initialize LaF");
+        }
+        ServerGUI gui = new ServerGUI(settings, maxLines, statsRefreshMillis);
+        gui.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                onClose.run();
+            }
+        });
+        return gui;
+    }
+
+    public ServerGUI(ServerSettings settings, int maxLines, int statsRefreshMillis) {
+        super("UDP Ping 服务端");
+        this.settings = settings;
+        this.maxLines = maxLines;
+
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("导出");
+
+        JMenuItem exportMessageItem = new JMenuItem("导出消息内容");
+        exportMessageItem.addActionListener(e -> exportLogToFile("message"));
+        fileMenu.add(exportMessageItem);
+
+        JMenuItem exportLogItem = new JMenuItem("导出日志内容");
+        exportLogItem.addActionListener(e -> exportLogToFile("log"));
+        fileMenu.add(exportLogItem);
+
+        menuBar.add(fileMenu);
+        setJMenuBar(menuBar);
+
+        setBounds(100, 100, 800, 350);
+        setMinimumSize(new Dimension(800, 550));
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        getContentPane().setLayout(null);
+
+        JLabel chatBoxLabel = new JLabel("收到的消息内容");
+        chatBoxLabel.setBounds(10, 10, 120, 20);
+        getContentPane().add(chatBoxLabel);
+
+        textArea = new JTextArea();
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setBounds(10, 40, 420, 200);
+        getContentPane().add(scrollPane);
+
+        JLabel logLabel = new JLabel("日志信息");
+        logLabel.setBounds(10, 250, 120, 20);
+        getContentPane().add(logLabel);
+
+        droppedLogLabel = new JLabel("已丢弃日志: 0");
+        droppedLogLabel.setBounds(140, 250, 290, 20);
+        getContentPane().add(droppedLogLabel);
+
+        logArea = new JTextArea();
+        JScrollPane logScrollPane = new JScrollPane(logArea);
+        logScrollPane.setBounds(10, 270, 420, 200);
+        getContentPane().add(logScrollPane);
+
+        JLabel portLabel = new JLabel("端口号修改");
+        portLabel.setBounds(450, 50, 120, 20);
+        getContentPane().add(portLabel);
+
+        portField = new JTextField(String.valueOf(settings.getPort()));
+        portField.setBounds(550, 50, 60, 20);
+        getContentPane().add(portField);
+
+        changePortButton = new JButton("修改端口");
+        changePortButton.setBounds(620, 50, 120, 20);
+        changePortButton.addActionListener(e -> {
+            try {
+                int newPort = Integer.parseInt(portField.getText());
+                if (!isPortAvailable(newPort)) {
+                    ErrorDialog.showError("端口 " + newPort + " 已被占用");
+                    return;
+                }
+                settings.setPort(newPort);
+                serverInfoLabel.setText("服务器地址: " + getLocalAddress() + "    当前监听端口: " + getPort());  // 更新 JLabel 的内容
+                appendLog("端口已更改为" + newPort + "\n");
+            } catch (NumberFormatException ex) {
+                ErrorDialog.showError("端口号不合法");
+            }
+        });
+        getContentPane().add(changePortButton);
+
+        lossCheckbox = new JCheckBox("模拟丢失", settings.getLoss());
+        lossCheckbox.setBounds(450, 100, 100, 20);
+        lossCheckbox.addItemListener(e -> {
+            if (showingSettings) {
+                return;
+            }
+            settings.setLoss(e.getStateChange() == ItemEvent.SELECTED);
+            if (e.getStateChange() == ItemEvent.SELECTED) {
+                appendLog("已启动模拟丢失功能\n");
+            } else if (e.getStateChange() == ItemEvent.DESELECTED) {
+                appendLog("已关闭模拟丢失功能\n");
+            }
+        });
+        getContentPane().add(lossCheckbox);
+
+        lossRateField = new JTextField(String.valueOf(settings.getLossRate()));
+        lossRateField.setBounds(550, 100, 60, 20);
+        getContentPane().add(lossRateField);
+
+        changeLossRateButton = new JButton("修改丢包率");
+        changeLossRateButton.setBounds(620, 100, 120, 20);
+        changeLossRateButton.addActionListener(e -> {
+            try {
+                int newLossRate = Integer.parseInt(lossRateField.getText());
+                if (newLossRate < 0 || newLossRate > 100) {
+                    ErrorDialog.showError("丢失率必须大于或等于0");
+                } else {
+                    settings.setLossRate(newLossRate);
+                    appendLog("丢包率已更改为" + newLossRate + "%\n");
+                }
+            } catch (NumberFormatException ex) {
+                appendLog("丢包率不合法\n");
+                ErrorDialog.showError("丢失率输入不合法，必须是大于0或小于100的整数");
+            }
+        });
+        getContentPane().add(changeLossRateButton);
+
+        delayCheckbox = new JCheckBox("模拟延迟", settings.getDelay());
+        delayCheckbox.setBounds(450, 150, 100, 20);
+        getContentPane().add(delayCheckbox);
+
+        delayField = new JTextField(String.valueOf(settings.getDelayTime()));
+        delayField.setBounds(550, 150, 60, 20);
+        delayCheckbox.addItemListener(e -> {
+            if (showingSettings) {
+                return;
+            }
+            settings.setDelay(e.getStateChange() == ItemEvent.SELECTED);
+            if (e.getStateChange() == ItemEvent.SELECTED) {
+                appendLog("已启动模拟延迟功能，延迟时间为" + getDelayTime() + " ms\n");
+            } else if (e.getStateChange() == ItemEvent.DESELECTED) {
+                appendLog("已关闭模拟延迟功能\n");
+            }
+        });
+        getContentPane().add(delayField);
+
+        changeDelayButton = new JButton("修改延迟时间");
+        changeDelayButton.setBounds(620, 150, 120, 20);
+        changeDelayButton.addActionListener(e -> {
+            try {
+                int newDelayTime = Integer.parseInt(delayField.getText());
+                if (newDelayTime < -1) {
+                    ErrorDialog.showError("延迟时间必须大于或等于-1");
+                } else {
+                    settings.setDelayTime(newDelayTime);
+                    if (newDelayTime == -1) {
+                        appendLog("延迟时间已更改为随机时间\n");
+                    } else {
+                        appendLog("延迟时间已更改为" + newDelayTime + " ms\n");
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                appendLog("延迟时间不合法\n");
+                ErrorDialog.showError("延迟时间输入不合法，必须是大于或等于-1的整数");
+            }
+        });
+        getContentPane().add(changeDelayButton);
+
+        metricsLabel = new JLabel("延迟队列: 0");
+        metricsLabel.setBounds(450, 200, 320, 40);
+        getContentPane().add(metricsLabel);
+
+        JLabel statisticLabel = new JLabel("统计信息");
+        statisticLabel.setBounds(450, 250, 120, 20);
+        getContentPane().add(statisticLabel);
+
+        statsTable = new JTable(statsTableModel);
+        statsTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        JScrollPane statsScrollPane = new JScrollPane(statsTable);
+        statsScrollPane.setBounds(450, 270, 300, 200);
+        getContentPane().add(statsScrollPane);
+
+        serverInfoLabel = new JLabel("服务器地址: " + getLocalAddress() + "    当前监听端口: " + getPort());
+        serverInfoLabel.setBounds(450, 10, 300, 20);
+        getContentPane().add(serverInfoLabel);
+
+        // 以固定帧率批量取出日志，避免每条日志都占用事件分发线程
+        new Timer(LOG_FRAME_MILLIS, e -> drainLogs()).start();
+        new Timer(statsRefreshMillis, e -> statsTableModel.refresh()).start();
+        settings.addListener(() -> SwingUtilities.invokeLater(this::showSettings));
+
+        setVisible(true);
+    }
+
+    private void exportLogToFile(String type) {
+        JFileChooser fileChooser = new JFileChooser();
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("LOG Files", "log");
+        fileChooser.setFileFilter(filter);
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (!file.getAbsolutePath().endsWith(".log")) {
+                file = new File(file.getAbsolutePath() + ".log");
+            }
+            if (type.equals("message") && journal != null) {
+                exportJournal(file);
+                return;
+            }
+            try (PrintWriter writer = new PrintWriter(file)) {
+                if (type.equals("message")) {
+                    writer.write(textArea.getText());
+                } else if (type.equals("log")) {
+                    writer.write(logArea.getText());
+                }
+            } catch (FileNotFoundException e) {
+                ErrorDialog.showError("导出日志文件错误: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 开启数据包日志时导出日志中的全部记录，而不只是界面上保留的部分。在后台线程中流式写出，不阻塞界面。
+     */
+    private void exportJournal(File file) {
+        new Thread(() -> {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                long count = JournalReader.export(journal.getDirectory(), record -> true, false, writer);
+                appendLog("已导出 " + count + " 条数据包记录到 " + file + "\n");
+            } catch (IOException e) {
+                ErrorDialog.showError("导出日志文件错误: " + e.getMessage());
+            }
+        }, "journal-export").start();
+    }
+
+    /**
+     * 开启数据包日志后，消息与日志窗格改为显示日志末尾的新记录：已回复的数据包显示在消息窗格，其余判定结果显示在日志窗格。
+     */
+    public void showJournal(PacketJournal journal) {
+        SwingUtilities.invokeLater(() -> {
+            this.journal = journal;
+            journalCursor = journal.getPosition();
+        });
+    }
+
+    private boolean isPortAvailable(int port) {
+        try (Socket ignored = new Socket("localhost", port)) {
+            return false;
+        } catch (IOException ignored) {
+            return true;
+        }
+    }
+
+    public void appendMessage(int messageNumber, InetAddress address, int sourcePort, int localPort,
+                              ByteBuffer payload, PingPayload parsed) {
+        LogEntry entry = logRing.claim();
+        if (entry != null) {
+            entry.setMessage(messageNumber, address, sourcePort, localPort, payload, parsed);
+            logRing.publish(entry);
+        }
+    }
+
+    public void appendLoss(InetAddress address, ByteBuffer payload) {
+        LogEntry entry = logRing.claim();
+        if (entry != null) {
+            entry.setLoss(address, payload);
+            logRing.publish(entry);
+        }
+    }
+
+    public void appendDelay(InetAddress address, int delayTime, ByteBuffer payload) {
+        LogEntry entry = logRing.claim();
+        if (entry != null) {
+            entry.setDelay(address, delayTime, payload);
+            logRing.publish(entry);
+        }
+    }
+
+    public void appendLog(String log) {
+        LogEntry entry = logRing.claim();
+        if (entry != null) {
+            entry.setText(log);
+            logRing.publish(entry);
+        }
+    }
+
+    private void drainLogs() {
+        logRing.drain(entry -> entry.render(entry.getKind() == LogEntry.Kind.MESSAGE ? messageBatch : logBatch), LOG_BATCH);
+        if (journal != null) {
+            tailJournal();
+        }
+        flushBatch(textArea, messageBatch);
+        flushBatch(logArea, logBatch);
+        long dropped = logRing.getDropped();
+        if (dropped != shownDropped) {
+            shownDropped = dropped;
+            droppedLogLabel.setText("已丢弃日志: " + dropped);
+        }
+    }
+
+    /**
+     * 读取上一帧之后新写入的日志记录。落后超过一帧能显示的数量时直接跳到末尾；
+     * 写入方在两帧之间必定已经提交，连续两帧仍未提交的记录视为已放弃并跳过。
+     */
+    private void tailJournal() {
+        long end = journal.getPosition();
+        if (end - journalCursor > LOG_BATCH) {
+            journalCursor = end - LOG_BATCH;
+        }
+        while (journalCursor < end) {
+            int state = journal.read(journalCursor, journalRecord);
+            if (state == PacketJournal.PENDING && journalStalledAt != journalCursor) {
+                journalStalledAt = journalCursor;
+                break;
+            }
+            if (state == PacketJournal.READ) {
+                journalRecord.render(journalRecord.getVerdict() == PacketJournal.Verdict.REPLIED ? messageBatch : logBatch);
+            }
+            journalCursor++;
+        }
+    }
+
+    private void flushBatch(JTextArea area, StringBuilder batch) {
+        if (batch.length() == 0) {
+            return;
+        }
+        area.append(batch.toString());
+        batch.setLength(0);
+        int excess = area.getLineCount() - maxLines;
+        if (excess > 0) {
+            try {
+                area.getDocument().remove(0, area.getLineStartOffset(excess));
+            } catch (javax.swing.text.BadLocationException ignored) {
+                // 行号由 getLineCount 计算得出，不会越界
+            }
+        }
+    }
+
+    /**
+     * 配置重新加载后刷新控件。setSelected 会触发复选框的监听器，刷新期间跳过监听器，
+     * 避免把刚加载的设置再写回 ServerSettings 并重复输出日志。
+     */
+    private void showSettings() {
+        showingSettings = true;
+        try {
+            portField.setText(String.valueOf(settings.getPort()));
+            serverInfoLabel.setText("服务器地址: " + getLocalAddress() + "    当前监听端口: " + getPort());
+            lossCheckbox.setSelected(settings.getLoss());
+            lossRateField.setText(String.valueOf(settings.getLossRate()));
+            delayCheckbox.setSelected(settings.getDelay());
+            delayField.setText(String.valueOf(settings.getDelayTime()));
+        } finally {
+            showingSettings = false;
+        }
+        appendLog("配置文件已重新加载\n");
+    }
+
+    public int getPort() {
+        return settings.getPort();
+    }
+
+    public int getDelayTime() {
+        return settings.getDelayTime();
+    }
+
+    private String getLocalAddress() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            ErrorDialog.showError("无法获取当前主机地址: " + e.getMessage());
+            return "无法获取当前主机地址";
+        }
+    }
+
+    public void setMetrics(String text) {
+        SwingUtilities.invokeLater(() -> metricsLabel.setText(text));
+    }
+
+    public void markStatsDirty(Statistic stat) {
+        statsTableModel.markDirty(stat);
+    }
+
+    public void removeStats(Statistic stat) {
+        statsTableModel.markRemoved(stat);
+    }
+}
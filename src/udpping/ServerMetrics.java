@@ -0,0 +1,95 @@
+package udpping;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务端全局计数器，热路径上只做 LongAdder 累加和一次直方图桶自增，导出指标时才汇总读取，
+ * 抓取指标不会阻塞数据包处理。
+ */
+public class ServerMetrics {
+    private final LongAdder received = new LongAdder();
+    private final LongAdder replied = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram(3, 8);
+
+    public void recordReceived() {
+        received.increment();
+    }
+
+    /**
+     * 记录一次回复及其从收到到发出的耗时。
+     */
+    public void recordReplied(long nanos) {
+        replied.increment();
+        latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    public void recordDelayed() {
+        delayed.increment();
+    }
+
+    public void recordDuplicated() {
+        duplicated.increment();
+    }
+
+    public void recordShed() {
+        shed.increment();
+    }
+
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    public void recordMalformed() {
+        malformed.increment();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getReplied() {
+        return replied.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getDelayed() {
+        return delayed.sum();
+    }
+
+    public long getDuplicated() {
+        return duplicated.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getMalformed() {
+        return malformed.sum();
+    }
+
+    /**
+     * 收到到回复发出的耗时直方图，单位微秒。
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
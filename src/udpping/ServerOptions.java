@@ -0,0 +1,439 @@
+package udpping;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+public class ServerOptions {
+    public enum Engine {
+        SOCKET, NIO, REUSEPORT, SELECTOR
+    }
+
+    public enum ExecutorMode {
+        PLATFORM, VIRTUAL, RING
+    }
+
+    private int port = 8000;
+    private int threadPoolSize = 64;
+    private Engine engine = Engine.SOCKET;
+    private boolean engineExplicit;
+    private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    private Path configFile;
+    private int bufferPoolSize = 1024;
+    private int shards = Runtime.getRuntime().availableProcessors();
+    private int logLines = 2000;
+    private boolean headless;
+    private int lossRate = -1;
+    private Integer delayTime;
+    private int statsRefreshMillis = 200;
+    private Integer queueCapacity;
+    private AdmissionExecutor.Policy shedPolicy = AdmissionExecutor.Policy.NEWEST;
+    private HandoffRing.WaitStrategy waitStrategy = HandoffRing.WaitStrategy.PARK;
+    private int batchSize = 32;
+    private int rateLimit;
+    private int burst;
+    private RateLimiter.KeyMode rateLimitKey = RateLimiter.KeyMode.IP;
+    private int statsMaxSources = 1024;
+    private int statsTtlSeconds = 300;
+    private int metricsPort;
+    private int metricsTopSources = 10;
+    private ImpairmentProfiles impairments = ImpairmentProfiles.EMPTY;
+    private Path journalDirectory;
+    private Set<Integer> extraPorts = Collections.emptySet();
+    private int journalSegmentMegabytes = 64;
+    private int journalSegments = 8;
+    private int senderThreads;
+    private int senderQueueCapacity = 4096;
+    private int traceSample = 100;
+
+    /**
+     * 参数格式: [port threadPoolSize [shards]] [--shards=N] [--engine=socket|nio|reuseport|selector] [--buffers=N] [--log-lines=N] [--stats-refresh=毫秒]
+     * [--queue=N] [--shed=newest|oldest|fair] [--executor=platform|virtual|ring] [--wait=spin|yield|park] [--batch=N]
+     * [--headless] [--loss=百分比] [--delay=毫秒|-1] [--config=文件]
+     * [--rate-limit=每秒包数] [--burst=N] [--rate-limit-by=ip|port] [--stats-max=N] [--stats-ttl=秒]
+     * [--metrics-port=N] [--metrics-top=N] [--journal=目录] [--journal-segment=MB] [--journal-segments=N]
+     * [--ports=端口,端口,起始-结束] [--sender=N] [--sender-queue=N] [--trace-sample=N]
+     * <p>
+     * 配置文件为 properties 格式，键名与参数名相同（另有 port、threads、headless=true），命令行参数优先于文件。
+     * 网络损伤配置（impair.*）只能写在配置文件中，见 {@link ImpairmentProfiles}。
+     * --ports 指定主端口之外同时监听的端口，多个端口由单个 Selector 服务，未指定 --engine 时改用 selector 引擎，
+     * 显式指定其他引擎时报错。
+     * --sender 指定独立发送线程数，工作线程只把回复放入发送队列，发送线程的等待策略与批量大小沿用 --wait 和 --batch。
+     * --queue 默认 8192；虚拟线程模式下它限制同时在处理中的数据包数，默认放宽到 65536。
+     * --trace-sample 为 JFR 录制时每 N 个数据包抽样一个记录生命周期事件，0 表示不记录，见 {@link PacketTracer}。
+     */
+    public static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                options.configFile = Path.of(arg.substring("--config=".length()));
+                Properties properties = loadProperties(options.configFile);
+                options.impairments = ImpairmentProfiles.parse(properties);
+                for (String key : properties.stringPropertyNames()) {
+                    // 损伤配置由 ServerSettings 读取，支持热更新
+                    if (!key.startsWith(ImpairmentProfiles.PREFIX)) {
+                        options.set(key, properties.getProperty(key).trim(), key);
+                    }
+                }
+            }
+        }
+        int positional = 0;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                if (positional == 0) {
+                    options.set("port", arg, arg);
+                } else if (positional == 1) {
+                    options.set("threads", arg, arg);
+                } else if (positional == 2) {
+                    options.setShards(arg);
+                } else {
+                    throw new IllegalArgumentException("多余的参数: " + arg);
+                }
+                positional++;
+                continue;
+            }
+            if (arg.equals("--headless")) {
+                options.headless = true;
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("参数缺少取值: " + arg);
+            }
+            if (!arg.startsWith("--config=")) {
+                options.set(arg.substring(2, eq), arg.substring(eq + 1), arg);
+            }
+        }
+        if (!options.extraPorts.isEmpty()) {
+            if (options.engineExplicit && options.engine != Engine.SELECTOR) {
+                throw new IllegalArgumentException("--ports 需要 selector 引擎，不能与 --engine="
+                        + options.engine.name().toLowerCase(Locale.ROOT) + " 同时使用");
+            }
+            options.engine = Engine.SELECTOR;
+        }
+        return options;
+    }
+
+    public static Properties loadProperties(Path file) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法读取配置文件 " + file + ": " + e.getMessage());
+        }
+        return properties;
+    }
+
+    private void set(String key, String value, String arg) {
+        switch (key) {
+            case "port":
+                port = Integer.parseInt(value);
+                break;
+            case "threads":
+                threadPoolSize = Integer.parseInt(value);
+                break;
+            case "headless":
+                headless = Boolean.parseBoolean(value);
+                break;
+            case "engine":
+                engine = Engine.valueOf(value.toUpperCase(Locale.ROOT));
+                engineExplicit = true;
+                break;
+            case "executor":
+                executorMode = ExecutorMode.valueOf(value.toUpperCase(Locale.ROOT));
+                break;
+            case "shards":
+                setShards(value);
+                break;
+            case "buffers":
+                bufferPoolSize = Integer.parseInt(value);
+                if (bufferPoolSize < 1) {
+                    throw new IllegalArgumentException("缓冲区数量必须大于0");
+                }
+                break;
+            case "loss":
+                lossRate = Integer.parseInt(value);
+                break;
+            case "delay":
+                delayTime = Integer.parseInt(value);
+                break;
+            case "log-lines":
+                logLines = Integer.parseInt(value);
+                if (logLines < 1) {
+                    throw new IllegalArgumentException("日志行数必须大于0");
+                }
+                break;
+            case "stats-refresh":
+                statsRefreshMillis = Integer.parseInt(value);
+                if (statsRefreshMillis < 1) {
+                    throw new IllegalArgumentException("统计刷新间隔必须大于0");
+                }
+                break;
+            case "queue":
+                queueCapacity = Integer.parseInt(value);
+                if (queueCapacity < 1) {
+                    throw new IllegalArgumentException("队列容量必须大于0");
+                }
+                break;
+            case "shed":
+                shedPolicy = AdmissionExecutor.Policy.parse(value);
+                break;
+            case "rate-limit":
+                rateLimit = Integer.parseInt(value);
+                if (rateLimit < 0) {
+                    throw new IllegalArgumentException("限速速率不能为负数");
+                }
+                break;
+            case "burst":
+                burst = Integer.parseInt(value);
+                if (burst < 1) {
+                    throw new IllegalArgumentException("突发量必须大于0");
+                }
+                break;
+            case "rate-limit-by":
+                rateLimitKey = RateLimiter.KeyMode.parse(value);
+                break;
+            case "stats-max":
+                statsMaxSources = Integer.parseInt(value);
+                if (statsMaxSources < 1) {
+                    throw new IllegalArgumentException("统计来源上限必须大于0");
+                }
+                break;
+            case "stats-ttl":
+                statsTtlSeconds = Integer.parseInt(value);
+                if (statsTtlSeconds < 1) {
+                    throw new IllegalArgumentException("统计过期时间必须大于0");
+                }
+                break;
+            case "metrics-port":
+                metricsPort = Integer.parseInt(value);
+                break;
+            case "metrics-top":
+                metricsTopSources = Integer.parseInt(value);
+                break;
+            case "ports":
+                extraPorts = ServerSettings.parsePorts(value);
+                break;
+            case "journal":
+                journalDirectory = Path.of(value);
+                break;
+            case "journal-segment":
+                journalSegmentMegabytes = Integer.parseInt(value);
+                if (journalSegmentMegabytes < 1 || journalSegmentMegabytes > 2047) {
+                    throw new IllegalArgumentException("数据包日志段大小必须在1到2047 MB之间");
+                }
+                break;
+            case "journal-segments":
+                journalSegments = Integer.parseInt(value);
+                if (journalSegments < 2) {
+                    throw new IllegalArgumentException("数据包日志保留段数必须大于1");
+                }
+                break;
+            case "sender":
+                senderThreads = Integer.parseInt(value);
+                if (senderThreads < 0) {
+                    throw new IllegalArgumentException("发送线程数不能小于0");
+                }
+                break;
+            case "sender-queue":
+                senderQueueCapacity = Integer.parseInt(value);
+                if (senderQueueCapacity < 1) {
+                    throw new IllegalArgumentException("发送队列长度必须大于0");
+                }
+                break;
+            case "trace-sample":
+                traceSample = Integer.parseInt(value);
+                if (traceSample < 0) {
+                    throw new IllegalArgumentException("抽样间隔不能小于0");
+                }
+                break;
+            case "wait":
+                waitStrategy = HandoffRing.WaitStrategy.parse(value);
+                break;
+            case "batch":
+                batchSize = Integer.parseInt(value);
+                if (batchSize < 1) {
+                    throw new IllegalArgumentException("批量大小必须大于0");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知参数: " + arg);
+        }
+    }
+
+    private void setShards(String value) {
+        shards = Integer.parseInt(value);
+        if (shards < 1) {
+            throw new IllegalArgumentException("分片数必须大于0");
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * 未指定 --config 时为 null。
+     */
+    public Path getConfigFile() {
+        return configFile;
+    }
+
+    public ImpairmentProfiles getImpairments() {
+        return impairments;
+    }
+
+    /**
+     * 未指定 --journal 时为 null，不记录数据包日志。
+     */
+    public Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public int getJournalSegmentMegabytes() {
+        return journalSegmentMegabytes;
+    }
+
+    /**
+     * 主端口之外同时监听的端口，未指定时为空。
+     */
+    public Set<Integer> getExtraPorts() {
+        return extraPorts;
+    }
+
+    public int getJournalSegments() {
+        return journalSegments;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * 未指定时为 -1，表示不开启模拟丢失。
+     */
+    public int getLossRate() {
+        return lossRate;
+    }
+
+    /**
+     * 未指定时为 null，表示不开启模拟延迟。
+     */
+    public Integer getDelayTime() {
+        return delayTime;
+    }
+
+    public int getLogLines() {
+        return logLines;
+    }
+
+    public int getStatsRefreshMillis() {
+        return statsRefreshMillis;
+    }
+
+    public int getQueueCapacity() {
+        if (queueCapacity != null) {
+            return queueCapacity;
+        }
+        return executorMode == ExecutorMode.VIRTUAL ? 65536 : 8192;
+    }
+
+    public AdmissionExecutor.Policy getShedPolicy() {
+        return shedPolicy;
+    }
+
+    /**
+     * 交接环工作线程与发送线程空闲时的等待策略。
+     */
+    public HandoffRing.WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 独立发送线程数，0 表示由工作线程直接发送回复。
+     */
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+
+    public int getSenderQueueCapacity() {
+        return senderQueueCapacity;
+    }
+
+    /**
+     * 生命周期事件的抽样间隔，只在 JFR 录制开启时生效。
+     */
+    public int getTraceSample() {
+        return traceSample;
+    }
+
+    /**
+     * 每个来源每秒允许的数据包数，0 表示不限速。
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * 未指定时默认允许 100 毫秒的突发量。
+     */
+    public int getBurst() {
+        return burst > 0 ? burst : Math.max(1, rateLimit / 10);
+    }
+
+    public RateLimiter.KeyMode getRateLimitKey() {
+        return rateLimitKey;
+    }
+
+    /**
+     * 同时保留统计的来源数上限，超出的新来源计入“其他”。
+     */
+    public int getStatsMaxSources() {
+        return statsMaxSources;
+    }
+
+    public int getStatsTtlSeconds() {
+        return statsTtlSeconds;
+    }
+
+    /**
+     * Prometheus 指标 HTTP 端口，0 表示不启动。
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public int getMetricsTopSources() {
+        return metricsTopSources;
+    }
+
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+}
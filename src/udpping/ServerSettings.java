@@ -0,0 +1,209 @@
+package udpping;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 运行期可修改的服务端设置，可被任意线程读写。图形界面和无界面模式都只通过它修改配置，
+ * 收包线程每个数据包只读取这里的原子变量，不再访问 Swing 组件。
+ */
+public class ServerSettings {
+    private final AtomicInteger port;
+    private final AtomicBoolean loss = new AtomicBoolean();
+    private final AtomicInteger lossRate = new AtomicInteger();
+    private final AtomicBoolean delay = new AtomicBoolean();
+    private final AtomicInteger delayTime = new AtomicInteger(1000);
+    private final AtomicReference<ImpairmentProfiles> impairments = new AtomicReference<>(ImpairmentProfiles.EMPTY);
+    private final AtomicReference<Set<Integer>> extraPorts = new AtomicReference<>(Collections.emptySet());
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> portListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean multiPort;
+
+    public ServerSettings(int port) {
+        this.port = new AtomicInteger(port);
+    }
+
+    public static ServerSettings from(ServerOptions options) {
+        ServerSettings settings = new ServerSettings(options.getPort());
+        if (options.getLossRate() >= 0) {
+            settings.setLoss(true);
+            settings.setLossRate(options.getLossRate());
+        }
+        if (options.getDelayTime() != null) {
+            settings.setDelay(true);
+            settings.setDelayTime(options.getDelayTime());
+        }
+        settings.setImpairments(options.getImpairments());
+        settings.extraPorts.set(options.getExtraPorts());
+        settings.multiPort = options.getEngine() == ServerOptions.Engine.SELECTOR;
+        return settings;
+    }
+
+    /**
+     * 从配置文件套用可热更新的设置：port、ports、loss、delay 以及 impair.* 损伤配置。loss/delay 缺省表示关闭。
+     * 先校验全部取值，出错时抛出 IllegalArgumentException 并保留原设置。只有 selector 引擎能同时监听多个端口，
+     * 其他引擎下配置了 ports 同样视为无效。
+     */
+    public void apply(Properties properties) {
+        int newPort = parseInt(properties, "port", getPort());
+        if (newPort < 1 || newPort > 65535) {
+            throw new IllegalArgumentException("端口号必须在1到65535之间");
+        }
+        int newLossRate = parseInt(properties, "loss", -1);
+        if (newLossRate > 100) {
+            throw new IllegalArgumentException("丢包率必须在0到100之间");
+        }
+        int newDelayTime = parseInt(properties, "delay", Integer.MIN_VALUE);
+        if (newDelayTime != Integer.MIN_VALUE && newDelayTime < -1) {
+            throw new IllegalArgumentException("延迟时间必须大于或等于-1");
+        }
+        ImpairmentProfiles newImpairments = ImpairmentProfiles.parse(properties);
+        Set<Integer> newPorts = parsePorts(properties.getProperty("ports", ""));
+        if (!multiPort && !newPorts.isEmpty()) {
+            throw new IllegalArgumentException("ports 只在 selector 引擎下生效，当前引擎只监听主端口");
+        }
+        boolean portsChanged = newPort != getPort() || !newPorts.equals(extraPorts.get());
+        port.set(newPort);
+        extraPorts.set(newPorts);
+        impairments.set(newImpairments);
+        loss.set(newLossRate >= 0);
+        if (newLossRate >= 0) {
+            lossRate.set(newLossRate);
+        }
+        delay.set(newDelayTime != Integer.MIN_VALUE);
+        if (newDelayTime != Integer.MIN_VALUE) {
+            delayTime.set(newDelayTime);
+        }
+        listeners.forEach(Runnable::run);
+        if (portsChanged) {
+            portListeners.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * 解析端口列表，格式为逗号分隔的端口或端口范围，如 "8000,8001,9000-9010"。空字符串表示没有端口。
+     */
+    public static Set<Integer> parsePorts(String value) {
+        Set<Integer> ports = new TreeSet<>();
+        for (String part : value.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            int from;
+            int to;
+            try {
+                from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash).trim());
+                to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的端口: " + part);
+            }
+            if (from < 1 || to > 65535 || from > to) {
+                throw new IllegalArgumentException("端口号必须在1到65535之间: " + part);
+            }
+            for (int p = from; p <= to; p++) {
+                ports.add(p);
+            }
+        }
+        return Collections.unmodifiableSet(ports);
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("配置项 " + key + " 不是整数: " + value);
+        }
+    }
+
+    /**
+     * 配置文件被重新加载后回调，图形界面借此刷新显示的设置。
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 监听端口集合变化（修改主端口或重新加载 ports 配置）后回调。
+     */
+    public void addPortListener(Runnable listener) {
+        portListeners.add(listener);
+    }
+
+    /**
+     * 需要监听的全部端口：主端口加上 ports 配置的附加端口，按端口号排序。
+     */
+    public Set<Integer> getListeningPorts() {
+        Set<Integer> ports = new TreeSet<>(extraPorts.get());
+        ports.add(getPort());
+        return ports;
+    }
+
+    public ImpairmentProfiles getImpairments() {
+        return impairments.get();
+    }
+
+    public void setImpairments(ImpairmentProfiles profiles) {
+        impairments.set(profiles);
+    }
+
+    public int getPort() {
+        return port.get();
+    }
+
+    public void setPort(int port) {
+        if (this.port.getAndSet(port) != port) {
+            portListeners.forEach(Runnable::run);
+        }
+    }
+
+    public boolean getLoss() {
+        return loss.get();
+    }
+
+    public void setLoss(boolean enabled) {
+        loss.set(enabled);
+    }
+
+    public int getLossRate() {
+        return lossRate.get();
+    }
+
+    public void setLossRate(int rate) {
+        if (rate < 0 || rate > 100) {
+            throw new IllegalArgumentException("丢包率必须在0到100之间");
+        }
+        lossRate.set(rate);
+    }
+
+    public boolean getDelay() {
+        return delay.get();
+    }
+
+    public void setDelay(boolean enabled) {
+        delay.set(enabled);
+    }
+
+    public int getDelayTime() {
+        return delayTime.get();
+    }
+
+    public void setDelayTime(int time) {
+        if (time < -1) {
+            throw new IllegalArgumentException("延迟时间必须大于或等于-1");
+        }
+        delayTime.set(time);
+    }
+}
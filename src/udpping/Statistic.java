@@ -0,0 +1,205 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个来源 IP 的统计。包数、字节数用 LongAdder 累加，大量工作线程同时更新同一个热门来源时竞争很小。
+ * 处理耗时与抖动直方图不按线程分组，每个来源约 4 KB，来源数达到上限时内存仍然可控；
+ * 同一来源的记录只在单个桶上做原子自增。包速率由统计清理线程每秒采样累计包数计算，热路径上没有额外开销。
+ */
+public class Statistic {
+    private static final int HISTOGRAM_PRECISION = 2;
+    private static final int RATE_WINDOW = 5;
+
+    private String ip;
+    private InetAddress address;
+    private AtomicInteger delayCount;
+    private AtomicInteger dropCount;
+    private final AtomicInteger shedCount = new AtomicInteger();
+    private final AtomicInteger rateLimitedCount = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram processingTime = new LatencyHistogram(HISTOGRAM_PRECISION);
+    private final LatencyHistogram jitter = new LatencyHistogram(HISTOGRAM_PRECISION);
+    private final AtomicLong lastArrival = new AtomicLong();
+    private final AtomicLong lastInterval = new AtomicLong(-1);
+    private volatile long lastSeen = System.nanoTime();
+    private volatile boolean evicted;
+    private final long[] sampleTimes = new long[RATE_WINDOW];
+    private final long[] sampleCounts = new long[RATE_WINDOW];
+    private int sampleIndex;
+    private int samples;
+    private volatile double packetsPerSecond;
+    private volatile ImpairmentState impairmentState;
+
+    public Statistic(String ip) {
+        this.ip = ip;
+        this.delayCount = new AtomicInteger(0);
+        this.dropCount = new AtomicInteger(0);
+    }
+
+    public Statistic(InetAddress address) {
+        this(address.getHostAddress());
+        this.address = address;
+    }
+
+    /**
+     * 来源地址，汇总多个来源的“其他”统计项为 null。
+     */
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public int getDelayCount() {
+        return delayCount.get();
+    }
+
+    public int getDropCount() {
+        return dropCount.get();
+    }
+
+    public int getShedCount() {
+        return shedCount.get();
+    }
+
+    public int getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * 接收线程每收到一个数据包调用一次。抖动为相邻两次到达间隔之差的绝对值，以微秒记录。
+     */
+    public void recordArrival(int length, long nowNanos) {
+        packets.increment();
+        bytes.add(length);
+        lastSeen = nowNanos;
+        long previous = lastArrival.getAndSet(nowNanos);
+        if (previous == 0) {
+            return;
+        }
+        long interval = nowNanos - previous;
+        long previousInterval = lastInterval.getAndSet(interval);
+        if (previousInterval >= 0) {
+            jitter.record(TimeUnit.NANOSECONDS.toMicros(Math.abs(interval - previousInterval)));
+        }
+    }
+
+    /**
+     * 记录从收到（或延迟到期）到回复发出的服务端处理耗时。
+     */
+    public void recordProcessing(long nanos) {
+        processingTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 由统计清理线程每秒调用一次，按最近几次采样计算滑动窗口内的包速率。
+     */
+    public synchronized void sample(long nowNanos) {
+        long count = packets.sum();
+        sampleTimes[sampleIndex] = nowNanos;
+        sampleCounts[sampleIndex] = count;
+        sampleIndex = (sampleIndex + 1) % RATE_WINDOW;
+        samples = Math.min(samples + 1, RATE_WINDOW);
+        // 窗口未满时最早的采样在下标 0，已满时在下一个将被覆盖的位置
+        int oldest = samples < RATE_WINDOW ? 0 : sampleIndex;
+        long elapsed = nowNanos - sampleTimes[oldest];
+        packetsPerSecond = elapsed > 0
+                ? (count - sampleCounts[oldest]) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public double getPacketsPerSecond() {
+        return packetsPerSecond;
+    }
+
+    /**
+     * 处理耗时的百分位，单位微秒。
+     */
+    public long getProcessingPercentile(double percentile) {
+        return processingTime.percentile(percentile);
+    }
+
+    /**
+     * 到达抖动的百分位，单位微秒。
+     */
+    public long getJitterPercentile(double percentile) {
+        return jitter.percentile(percentile);
+    }
+
+    public ImpairmentState getImpairmentState() {
+        return impairmentState;
+    }
+
+    public void setImpairmentState(ImpairmentState state) {
+        this.impairmentState = state;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    public void markEvicted() {
+        evicted = true;
+    }
+
+    public void incrementDelayCount() {
+        this.delayCount.incrementAndGet();
+    }
+
+    public void incrementDropCount() {
+        this.dropCount.incrementAndGet();
+    }
+
+    public void incrementShedCount() {
+        this.shedCount.incrementAndGet();
+    }
+
+    public void incrementRateLimitedCount() {
+        this.rateLimitedCount.incrementAndGet();
+    }
+
+    public int incrementQueued() {
+        return queued.incrementAndGet();
+    }
+
+    public int decrementQueued() {
+        return queued.decrementAndGet();
+    }
+
+    /**
+     * 返回 true 表示本次调用才将其标记为脏，调用方需要负责通知刷新。
+     */
+    public boolean markDirty() {
+        return !dirty.get() && dirty.compareAndSet(false, true);
+    }
+
+    public void clearDirty() {
+        dirty.set(false);
+    }
+}
@@ -0,0 +1,96 @@
+package udpping;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 按来源 IP 保存统计项，内存有上限：超过 TTL 未出现的来源被清除；来源数达到上限时，
+ * 每次清理移除最久未出现的一部分来源腾出位置，清理之前出现的新来源合并计入“其他”统计项。
+ */
+public class StatisticRegistry {
+    public static final String OVERFLOW_IP = "其他";
+
+    private final ConcurrentHashMap<InetAddress, Statistic> statistics = new ConcurrentHashMap<>();
+    private final Statistic overflow = new Statistic(OVERFLOW_IP);
+    private final int maxSources;
+    private final long ttlNanos;
+
+    public StatisticRegistry(int maxSources, long ttl, TimeUnit unit) {
+        this.maxSources = maxSources;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public Statistic get(InetAddress address) {
+        Statistic stat = statistics.get(address);
+        if (stat != null) {
+            return stat;
+        }
+        if (statistics.size() >= maxSources) {
+            return overflow;
+        }
+        return statistics.computeIfAbsent(address, Statistic::new);
+    }
+
+    /**
+     * 由单个后台线程定期调用：更新包速率采样，清除过期来源，超出上限时按最近出现时间淘汰，
+     * 被移除的统计项交给 removed 回调（用于从界面表格中删除）。
+     */
+    public void sweep(Consumer<Statistic> removed) {
+        long now = System.nanoTime();
+        List<Map.Entry<InetAddress, Statistic>> live = new ArrayList<>(statistics.size());
+        List<Long> lastSeen = new ArrayList<>(statistics.size());
+        for (Map.Entry<InetAddress, Statistic> entry : statistics.entrySet()) {
+            long seen = entry.getValue().getLastSeen();
+            if (now - seen > ttlNanos) {
+                evict(entry, removed);
+            } else {
+                entry.getValue().sample(now);
+                live.add(entry);
+                lastSeen.add(seen);
+            }
+        }
+        overflow.sample(now);
+        // 保留一成余量给新来源，避免达到上限后每个新来源都落入“其他”
+        int target = maxSources - Math.max(1, maxSources / 10);
+        int excess = live.size() - target;
+        if (excess > 0) {
+            // 按采样时的最近出现时间排序，排序期间该值仍在变化，不能直接比较统计项
+            Integer[] order = new Integer[live.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(lastSeen::get));
+            for (int i = 0; i < excess; i++) {
+                evict(live.get(order[i]), removed);
+            }
+        }
+    }
+
+    private void evict(Map.Entry<InetAddress, Statistic> entry, Consumer<Statistic> removed) {
+        Statistic stat = entry.getValue();
+        if (statistics.remove(entry.getKey(), stat)) {
+            stat.markEvicted();
+            removed.accept(stat);
+        }
+    }
+
+    public Collection<Statistic> values() {
+        return statistics.values();
+    }
+
+    public Statistic getOverflow() {
+        return overflow;
+    }
+
+    public int size() {
+        return statistics.size();
+    }
+}
@@ -0,0 +1,145 @@
+package udpping;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 按 IP 建立索引的统计表模型。工作线程只把变化的统计项标记为脏，
+ * 由界面线程定时调用 {@link #refresh()} 只发布发生变化的行。
+ */
+public class StatsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"IP地址", "已延迟数", "已丢弃数", "过载丢弃数", "限速丢弃数",
+            "包数", "字节数", "包/秒", "处理P99(μs)", "抖动P99(μs)"};
+
+    private final List<Statistic> rows = new ArrayList<>();
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ConcurrentLinkedQueue<Statistic> dirty = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Statistic> removed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 可由任意线程调用，同一统计项在两次刷新之间只入队一次。
+     */
+    public void markDirty(Statistic stat) {
+        if (stat.markDirty()) {
+            dirty.offer(stat);
+        }
+    }
+
+    /**
+     * 统计项被清除后调用，可由任意线程调用，下次刷新时删除对应的行。
+     */
+    public void markRemoved(Statistic stat) {
+        removed.offer(stat);
+    }
+
+    /**
+     * 仅在事件分发线程调用。
+     */
+    public void refresh() {
+        removeRows();
+        int firstInserted = rows.size();
+        Statistic stat;
+        while ((stat = dirty.poll()) != null) {
+            stat.clearDirty();
+            if (stat.isEvicted()) {
+                continue;
+            }
+            Integer row = index.get(stat.getIp());
+            if (row == null) {
+                index.put(stat.getIp(), rows.size());
+                rows.add(stat);
+            } else if (row < firstInserted) {
+                fireTableRowsUpdated(row, row);
+            }
+        }
+        if (rows.size() > firstInserted) {
+            fireTableRowsInserted(firstInserted, rows.size() - 1);
+        }
+    }
+
+    /**
+     * 批量删除被清除的行后重建索引，只通知一次表格结构变化。
+     */
+    private void removeRows() {
+        if (removed.isEmpty()) {
+            return;
+        }
+        Statistic stat;
+        boolean changed = false;
+        while ((stat = removed.poll()) != null) {
+            Integer row = index.remove(stat.getIp());
+            if (row != null && rows.get(row) == stat) {
+                rows.set(row, null);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        rows.removeIf(Objects::isNull);
+        index.clear();
+        for (int i = 0; i < rows.size(); i++) {
+            index.put(rows.get(i).getIp(), i);
+        }
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == 0) {
+            return String.class;
+        }
+        if (column == 7) {
+            return Double.class;
+        }
+        return column < 5 ? Integer.class : Long.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Statistic stat = rows.get(row);
+        switch (column) {
+            case 0:
+                return stat.getIp();
+            case 1:
+                return stat.getDelayCount();
+            case 2:
+                return stat.getDropCount();
+            case 3:
+                return stat.getShedCount();
+            case 4:
+                return stat.getRateLimitedCount();
+            case 5:
+                return stat.getPackets();
+            case 6:
+                return stat.getBytes();
+            case 7:
+                return Math.round(stat.getPacketsPerSecond() * 10) / 10.0;
+            case 8:
+                return stat.getProcessingPercentile(99);
+            default:
+                return stat.getJitterPercentile(99);
+        }
+    }
+}
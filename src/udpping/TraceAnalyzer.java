@@ -0,0 +1,186 @@
+package udpping;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * 把 JFR 录制中的 {@link PacketLifecycleEvent} 汇总为各阶段耗时分布，定位 p99 变化出在哪个阶段。
+ * 命令行用法：
+ * <pre>
+ * java -cp udp-ping-server.jar udpping.TraceAnalyzer 录制.jfr [--ip=地址] [--top=N]
+ * </pre>
+ * 阶段分布只统计已回复的数据包，其余结果只计数；--top 列出总耗时最长的 N 个数据包及其各阶段耗时。
+ */
+public class TraceAnalyzer {
+    private static final String[] STAGES = {"receive", "impairment", "simulatedDelay", "queue", "handle", "sendQueue", "send"};
+    private static final String[] LABELS = {"接收循环", "网络损伤", "模拟延迟", "执行器排队", "处理", "发送排队", "发送"};
+
+    private final String address;
+    private final Map<String, Long> outcomes = new TreeMap<>();
+    private final long[][] samples = new long[STAGES.length + 1][];
+    private final PriorityQueue<Slowest> slowest;
+    private final int top;
+    private int count;
+
+    private static final class Slowest {
+        final String source;
+        final long sequence;
+        final long[] stages;
+
+        Slowest(String source, long sequence, long[] stages) {
+            this.source = source;
+            this.sequence = sequence;
+            this.stages = stages;
+        }
+
+        long total() {
+            return stages[STAGES.length];
+        }
+    }
+
+    /**
+     * address 为 null 时不按来源过滤。
+     */
+    public TraceAnalyzer(String address, int top) {
+        this.address = address;
+        this.top = top;
+        this.slowest = new PriorityQueue<>(top + 1, Comparator.comparingLong(Slowest::total));
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new long[1024];
+        }
+    }
+
+    /**
+     * 读取一个录制文件中的生命周期事件，返回读入的事件数。
+     */
+    public long read(Path file) throws IOException {
+        long events = 0;
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                if (event.getEventType().getName().equals(PacketLifecycleEvent.NAME)) {
+                    add(event);
+                    events++;
+                }
+            }
+        }
+        return events;
+    }
+
+    private void add(RecordedEvent event) {
+        String source = event.getString("source");
+        if (address != null && !address.equals(source)) {
+            return;
+        }
+        String outcome = event.getString("outcome");
+        outcomes.merge(outcome, 1L, Long::sum);
+        if (!PacketJournal.Verdict.REPLIED.name().equals(outcome)) {
+            return;
+        }
+        if (count == samples[0].length) {
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = Arrays.copyOf(samples[i], count * 2);
+            }
+        }
+        long[] stages = new long[STAGES.length + 1];
+        for (int i = 0; i < STAGES.length; i++) {
+            stages[i] = event.getDuration(STAGES[i]).toNanos();
+            samples[i][count] = stages[i];
+        }
+        stages[STAGES.length] = event.getDuration().toNanos();
+        samples[STAGES.length][count] = stages[STAGES.length];
+        count++;
+        if (top > 0) {
+            slowest.offer(new Slowest(source + ":" + event.getInt("sourcePort"), event.getLong("sequence"), stages));
+            if (slowest.size() > top) {
+                slowest.poll();
+            }
+        }
+    }
+
+    public void print(PrintStream out) {
+        StringBuilder summary = new StringBuilder("结果:");
+        for (Map.Entry<String, Long> entry : outcomes.entrySet()) {
+            summary.append(' ').append(PacketJournal.Verdict.valueOf(entry.getKey()).getLabel()).append('=').append(entry.getValue());
+        }
+        out.println(summary);
+        if (count == 0) {
+            out.println("没有已回复的数据包事件");
+            return;
+        }
+        double totalMean = mean(samples[STAGES.length]);
+        out.printf("%-10s %10s %10s %10s %10s %10s %7s%n", "阶段(ms)", "平均", "p50", "p90", "p99", "最大", "占比");
+        for (int i = 0; i <= STAGES.length; i++) {
+            long[] sorted = Arrays.copyOf(samples[i], count);
+            Arrays.sort(sorted);
+            double mean = mean(samples[i]);
+            out.printf("%-10s %10.3f %10.3f %10.3f %10.3f %10.3f %6.1f%%%n", i < STAGES.length ? LABELS[i] : "合计",
+                    mean / 1e6, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.9) / 1e6,
+                    percentile(sorted, 0.99) / 1e6, sorted[count - 1] / 1e6, totalMean > 0 ? mean * 100 / totalMean : 0);
+        }
+        if (slowest.isEmpty()) {
+            return;
+        }
+        out.println("最慢的 " + slowest.size() + " 个数据包:");
+        Slowest[] packets = slowest.toArray(new Slowest[0]);
+        Arrays.sort(packets, Comparator.comparingLong(Slowest::total).reversed());
+        for (Slowest packet : packets) {
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("  %s 序号=%d 合计=%.3fms", packet.source, packet.sequence, packet.total() / 1e6));
+            for (int i = 0; i < STAGES.length; i++) {
+                if (packet.stages[i] > 0) {
+                    line.append(String.format(" %s=%.3f", LABELS[i], packet.stages[i] / 1e6));
+                }
+            }
+            out.println(line);
+        }
+    }
+
+    private double mean(long[] values) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum / count;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        String address = null;
+        int top = 10;
+        for (String arg : args) {
+            if (arg.startsWith("--ip=")) {
+                address = arg.substring("--ip=".length());
+            } else if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else if (!arg.startsWith("--") && file == null) {
+                file = Path.of(arg);
+            } else {
+                throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (file == null) {
+            System.out.println("参数: 录制.jfr [--ip=地址] [--top=N]");
+            return;
+        }
+        TraceAnalyzer analyzer = new TraceAnalyzer(address, top);
+        if (analyzer.read(file) == 0) {
+            System.out.println("录制中没有 " + PacketLifecycleEvent.NAME + " 事件，请确认录制时使用了 --trace-sample");
+            return;
+        }
+        analyzer.print(System.out);
+    }
+}
@@ -0,0 +1,891 @@
+package udpping;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UDPPingServer {
+    private static final int BUFFER_SIZE = 1024;
+
+    private ServerGUI gui;
+    private final ServerOptions options;
+    private final ServerSettings settings;
+    private final PacketExecutor executor;
+    private final HandoffRing ring;
+    private final BufferPool bufferPool;
+    private final SenderStage sender;
+    private final ImpairmentPipeline impairments;
+    private final PacketTracer tracer;
+    private AtomicBoolean running;
+    private AtomicInteger messageNumber = new AtomicInteger(1);
+    private final StatisticRegistry statistics;
+    private final RateLimiter rateLimiter;
+    private DatagramSocket prevSocket = null;
+    private ScheduledExecutorService delayedExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final HashedTimerWheel timerWheel = new HashedTimerWheel(1, TimeUnit.MILLISECONDS, 1024);
+    private final DelayAccuracy delayAccuracy = new DelayAccuracy();
+    private final ThreadLocal<PingPayload> payloads = ThreadLocal.withInitial(PingPayload::new);
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final EpochClock clock = new EpochClock();
+    private MetricsServer metricsServer;
+    private ConfigWatcher configWatcher;
+    private PacketJournal journal;
+    private volatile MultiPortListener portListener;
+    private final ImpairmentResult selectorImpairment = new ImpairmentResult();
+
+    public UDPPingServer(ServerOptions options) {
+        this.options = options;
+        if (options.getExecutorMode() == ServerOptions.ExecutorMode.RING) {
+            ring = new HandoffRing(options.getThreadPoolSize(), options.getQueueCapacity(), options.getWaitStrategy(),
+                    options.getBatchSize(), this::handleSlot, this::onShed, this::reportError);
+        } else {
+            ring = null;
+        }
+        if (ring != null) {
+            executor = ring;
+        } else if (options.getExecutorMode() == ServerOptions.ExecutorMode.VIRTUAL) {
+            executor = new VirtualThreadExecutor(options.getQueueCapacity(), this::onShed);
+        } else {
+            executor = new AdmissionExecutor(options.getThreadPoolSize(), options.getQueueCapacity(),
+                    options.getShedPolicy(), this::onShed);
+        }
+        bufferPool = options.getEngine() != ServerOptions.Engine.SOCKET
+                ? new BufferPool(options.getBufferPoolSize(), BUFFER_SIZE) : null;
+        settings = ServerSettings.from(options);
+        sender = options.getSenderThreads() > 0
+                ? new SenderStage(options.getSenderThreads(), options.getSenderQueueCapacity(), BUFFER_SIZE,
+                        options.getWaitStrategy(), options.getBatchSize(), clock, this::onSent, this::onSendFailed,
+                        this::reportError)
+                : null;
+        running = new AtomicBoolean(true);
+        statistics = new StatisticRegistry(options.getStatsMaxSources(), options.getStatsTtlSeconds(), TimeUnit.SECONDS);
+        impairments = new ImpairmentPipeline(settings, statistics.getOverflow());
+        tracer = new PacketTracer(options.getTraceSample());
+        delayedExecutor.scheduleAtFixedRate(this::sweepStatistics, 1, 1, TimeUnit.SECONDS);
+        delayedExecutor.scheduleAtFixedRate(clock::calibrate, 10, 10, TimeUnit.SECONDS);
+        if (options.getRateLimit() > 0) {
+            rateLimiter = new RateLimiter(options.getRateLimit(), options.getBurst(), options.getRateLimitKey());
+            delayedExecutor.scheduleAtFixedRate(rateLimiter::evictIdle, 1, 1, TimeUnit.SECONDS);
+        } else {
+            rateLimiter = null;
+        }
+        if (options.getJournalDirectory() != null) {
+            try {
+                journal = new PacketJournal(options.getJournalDirectory(),
+                        options.getJournalSegmentMegabytes() * 1024L * 1024L, options.getJournalSegments(), clock);
+            } catch (IOException e) {
+                reportError("无法打开数据包日志: " + e.getMessage());
+            }
+        }
+        if (options.isHeadless()) {
+            return;
+        }
+        gui = ServerGUI.open(settings, options.getLogLines(), options.getStatsRefreshMillis(), this::stop);
+        if (journal != null) {
+            gui.showJournal(journal);
+        }
+        delayedExecutor.scheduleAtFixedRate(this::publishMetrics, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void start() {
+        if (options.getMetricsPort() > 0) {
+            try {
+                metricsServer = new MetricsServer(options.getMetricsPort(), options.getMetricsTopSources(), this);
+                metricsServer.start();
+            } catch (IOException e) {
+                reportError("无法启动指标服务: " + e.getMessage());
+            }
+        }
+        if (options.getConfigFile() != null) {
+            try {
+                configWatcher = new ConfigWatcher(options.getConfigFile(), settings);
+                configWatcher.start();
+            } catch (IOException e) {
+                reportError("无法监视配置文件: " + e.getMessage());
+            }
+        }
+        if (options.getEngine() == ServerOptions.Engine.NIO) {
+            new Thread(() -> runChannelLoop(false)).start();
+            return;
+        }
+        if (options.getEngine() == ServerOptions.Engine.SELECTOR) {
+            new Thread(this::runSelectorLoop, "selector").start();
+            return;
+        }
+        if (options.getEngine() == ServerOptions.Engine.REUSEPORT) {
+            // 每个分片独立绑定同一端口，由内核按四元组哈希分发，分片线程自行接收并回复
+            for (int i = 0; i < options.getShards(); i++) {
+                new Thread(() -> runChannelLoop(true), "shard-" + i).start();
+            }
+            return;
+        }
+        new Thread(() -> {
+            DatagramSocket socket = null;
+            try {
+                while (running.get()) {
+                    socket = manageSocket(socket);
+                    receiveAndHandlePackets(socket);
+                }
+            } catch (Exception e) {
+                reportError(e.getMessage());
+                stop();
+            } finally {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }).start();
+    }
+
+    private void runChannelLoop(boolean sharded) {
+        DatagramChannel channel = null;
+        try {
+            while (running.get()) {
+                channel = manageChannel(channel, sharded);
+                receiveAndHandleBuffers(channel, sharded);
+            }
+        } catch (Exception e) {
+            reportError(e.getMessage());
+            stop();
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * 单个 Selector 线程监听主端口和附加端口，端口集合变化时由 MultiPortListener 在循环内增删通道。
+     */
+    private void runSelectorLoop() {
+        try {
+            portListener = new MultiPortListener(settings, bufferPool, this::receivePortBuffer, this::reportPortChange,
+                    this::reportError);
+            portListener.run();
+        } catch (Exception e) {
+            reportError(e.getMessage());
+            stop();
+        }
+    }
+
+    private DatagramSocket manageSocket(DatagramSocket socket) throws SocketException {
+        if (socket == null || socket.getLocalPort() != settings.getPort()) {
+            if (prevSocket != null) {
+                delayedExecutor.schedule(prevSocket::close, 1, TimeUnit.SECONDS);
+            }
+            prevSocket = socket;
+            socket = new DatagramSocket(settings.getPort());
+            reportListening(settings.getPort());
+        }
+        return socket;
+    }
+
+    private DatagramChannel manageChannel(DatagramChannel channel, boolean reusePort) throws IOException {
+        int port = settings.getPort();
+        if (channel == null || channel.socket().getLocalPort() != port) {
+            if (channel != null) {
+                DatagramChannel stale = channel;
+                delayedExecutor.schedule(() -> closeQuietly(stale), 1, TimeUnit.SECONDS);
+            }
+            // 与 DatagramSocket 一样使用双栈，分片模式下各分片都绑定到同一个双栈地址上，IPv4 与 IPv6 数据包都由内核分发
+            channel = DatagramChannel.open();
+            if (reusePort) {
+                if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    closeQuietly(channel);
+                    throw new IOException("当前平台不支持 SO_REUSEPORT");
+                }
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(new InetSocketAddress(port));
+            reportListening(port);
+        }
+        return channel;
+    }
+
+    private void closeQuietly(DatagramChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 关闭失败无需处理
+        }
+    }
+
+    private void receiveAndHandlePackets(DatagramSocket socket) throws IOException {
+        DatagramPacket spare = null;
+        ImpairmentResult impairment = new ImpairmentResult();
+        while (running.get() && socket.getLocalPort() == settings.getPort()) {
+            DatagramPacket packet = spare != null ? spare : new DatagramPacket(new byte[BUFFER_SIZE], BUFFER_SIZE);
+            spare = null;
+            packet.setLength(BUFFER_SIZE);
+            socket.receive(packet);
+            long received = System.nanoTime();
+            ByteBuffer payload = ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+            PacketLifecycleEvent trace = tracer.sample(packet.getAddress(), packet.getPort(), payload, received);
+            Statistic stat = statisticFor(packet.getAddress());
+            stat.recordArrival(packet.getLength(), received);
+            metrics.recordReceived();
+
+            if (rateLimited(stat, packet.getAddress(), packet.getPort(), payload, trace)) {
+                spare = packet;
+                continue;
+            }
+
+            // 模拟丢失、延迟、乱序与重复
+            if (!impair(stat, packet.getAddress(), packet.getPort(), payload, impairment, trace)) {
+                spare = packet;
+                continue;
+            }
+            int delayTime = impairment.getDelayMillis();
+            int copies = impairment.getCopies();
+            long start = received + TimeUnit.MILLISECONDS.toNanos(delayTime);
+            if (trace != null) {
+                trace.admitted(System.nanoTime(), start, copies);
+            }
+
+            // 交接环模式下未延迟的数据包直接写入槽位，并换回槽位中已处理完的旧包用于下一次接收
+            if (ring != null && delayTime <= 0) {
+                spare = ring.offer(stat, socket, packet, start, copies, trace);
+                if (spare == packet) {
+                    journalShed(packet.getAddress(), packet.getPort(), payload);
+                }
+                continue;
+            }
+
+            dispatch(new PacketTask(stat, () -> {
+                try {
+                    handlePacket(stat, socket, packet, start, copies, trace);
+                } catch (Exception e) {
+                    reportError("处理数据包错误: " + e.getMessage());
+                }
+            }, () -> {
+                finish(trace, PacketJournal.Verdict.SHED);
+                journalShed(packet.getAddress(), packet.getPort(), payload);
+            }), delayTime);
+        }
+    }
+
+    /**
+     * inline 为 true 时（分片模式）未延迟的数据包直接在接收线程上处理并回复，不经过线程池。
+     */
+    private void receiveAndHandleBuffers(DatagramChannel channel, boolean inline) throws IOException {
+        DatagramSocket adaptor = channel.socket();
+        ImpairmentResult impairment = new ImpairmentResult();
+        while (running.get() && adaptor.getLocalPort() == settings.getPort()) {
+            ByteBuffer buffer = bufferPool.acquire();
+            InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+            long received = System.nanoTime();
+            buffer.flip();
+            PacketLifecycleEvent trace = tracer.sample(source.getAddress(), source.getPort(), buffer, received);
+            Statistic stat = statisticFor(source.getAddress());
+            if (!admit(stat, source, buffer, received, impairment, trace)) {
+                continue;
+            }
+            int delayTime = impairment.getDelayMillis();
+            int copies = impairment.getCopies();
+            long start = received + TimeUnit.MILLISECONDS.toNanos(delayTime);
+
+            if (inline && delayTime <= 0) {
+                try {
+                    handleBuffer(stat, channel, source, buffer, start, copies, null, trace);
+                } catch (Exception e) {
+                    reportError("处理数据包错误: " + e.getMessage());
+                } finally {
+                    bufferPool.release(buffer);
+                }
+                continue;
+            }
+
+            if (ring != null && delayTime <= 0) {
+                if (!ring.offer(stat, channel, source, buffer, start, copies, trace)) {
+                    journalShed(source.getAddress(), source.getPort(), buffer);
+                    bufferPool.release(buffer);
+                }
+                continue;
+            }
+
+            dispatch(new PacketTask(stat, () -> {
+                try {
+                    handleBuffer(stat, channel, source, buffer, start, copies, null, trace);
+                } catch (Exception e) {
+                    reportError("处理数据包错误: " + e.getMessage());
+                } finally {
+                    bufferPool.release(buffer);
+                }
+            }, () -> {
+                finish(trace, PacketJournal.Verdict.SHED);
+                journalShed(source.getAddress(), source.getPort(), buffer);
+                bufferPool.release(buffer);
+            }), delayTime);
+        }
+    }
+
+    /**
+     * NIO 模式下的统计、限速与损伤判定。返回 false 表示数据包已被丢弃，缓冲区已归还。
+     */
+    private boolean admit(Statistic stat, InetSocketAddress source, ByteBuffer buffer, long received,
+                          ImpairmentResult impairment, PacketLifecycleEvent trace) {
+        stat.recordArrival(buffer.remaining(), received);
+        metrics.recordReceived();
+        if (rateLimited(stat, source.getAddress(), source.getPort(), buffer, trace)
+                || !impair(stat, source.getAddress(), source.getPort(), buffer, impairment, trace)) {
+            bufferPool.release(buffer);
+            return false;
+        }
+        if (trace != null) {
+            trace.admitted(System.nanoTime(), received + TimeUnit.MILLISECONDS.toNanos(impairment.getDelayMillis()),
+                    impairment.getCopies());
+        }
+        return true;
+    }
+
+    /**
+     * Selector 线程收到的数据包。交给工作线程前计入端口的在途数，回复或丢弃后再减去，
+     * 端口被移除时据此等待在途数据包回复完毕再关闭通道。
+     */
+    private void receivePortBuffer(MultiPortListener.Port port, InetSocketAddress source, ByteBuffer buffer,
+                                   long received) {
+        PacketLifecycleEvent trace = tracer.sample(source.getAddress(), source.getPort(), buffer, received);
+        Statistic stat = statisticFor(source.getAddress());
+        if (!admit(stat, source, buffer, received, selectorImpairment, trace)) {
+            return;
+        }
+        int delayTime = selectorImpairment.getDelayMillis();
+        int copies = selectorImpairment.getCopies();
+        long start = received + TimeUnit.MILLISECONDS.toNanos(delayTime);
+        DatagramChannel channel = port.getChannel();
+        port.acquire();
+        dispatch(new PacketTask(stat, () -> {
+            try {
+                handleBuffer(stat, channel, source, buffer, start, copies, port, trace);
+            } catch (Exception e) {
+                reportError("处理数据包错误: " + e.getMessage());
+            } finally {
+                bufferPool.release(buffer);
+                port.release();
+            }
+        }, () -> {
+            finish(trace, PacketJournal.Verdict.SHED);
+            journalShed(source.getAddress(), source.getPort(), buffer);
+            bufferPool.release(buffer);
+            port.release();
+        }), delayTime);
+    }
+
+    /**
+     * 无延迟的数据包直接交给线程池；延迟的数据包挂到时间轮上，到期后再交给线程池处理，
+     * 发送完成时记录实际发送时间与计划时间的偏差。线程池队列已满时任务按准入策略丢弃。
+     * 虚拟线程模式下阻塞代价很低，延迟直接在处理线程内 sleep。
+     */
+    private void dispatch(PacketTask task, int delayTime) {
+        if (delayTime <= 0) {
+            executor.execute(task);
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayTime);
+        if (executor.isBlockingCheap()) {
+            executor.execute(new PacketTask(task.getSource(), () -> {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(deadline - System.nanoTime());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.discard();
+                    return;
+                }
+                task.run();
+                delayAccuracy.record(System.nanoTime() - deadline);
+            }, task::discard));
+            return;
+        }
+        timerWheel.schedule(() -> executor.execute(new PacketTask(task.getSource(), () -> {
+            task.run();
+            delayAccuracy.record(System.nanoTime() - deadline);
+        }, task::discard)), delayTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 交接环工作线程处理一个槽位中的数据包。
+     */
+    private void handleSlot(PacketSlot slot) {
+        try {
+            if (slot.getChannel() != null) {
+                handleBuffer(slot.getSource(), slot.getChannel(), slot.getAddress(), slot.getBuffer(), slot.getStart(),
+                        slot.getCopies(), null, slot.getTrace());
+            } else {
+                handlePacket(slot.getSource(), slot.getSocket(), slot.getPacket(), slot.getStart(), slot.getCopies(),
+                        slot.getTrace());
+            }
+        } catch (Exception e) {
+            reportError("处理数据包错误: " + e.getMessage());
+        } finally {
+            if (slot.getBuffer() != null) {
+                bufferPool.release(slot.getBuffer());
+            }
+        }
+    }
+
+    private Statistic statisticFor(InetAddress address) {
+        return statistics.get(address);
+    }
+
+    /**
+     * 每秒一次：采样包速率并清除过期来源。包速率变化不会触发统计项变脏，因此这里统一标记刷新。
+     */
+    private void sweepStatistics() {
+        statistics.sweep(stat -> {
+            if (gui != null) {
+                gui.removeStats(stat);
+            }
+        });
+        if (gui != null) {
+            statistics.values().forEach(gui::markStatsDirty);
+            if (statistics.getOverflow().getPackets() > 0) {
+                gui.markStatsDirty(statistics.getOverflow());
+            }
+        }
+    }
+
+    private boolean rateLimited(Statistic stat, InetAddress address, int port, ByteBuffer payload,
+                                PacketLifecycleEvent trace) {
+        if (rateLimiter == null || rateLimiter.tryAcquire(address, port)) {
+            return false;
+        }
+        finish(trace, PacketJournal.Verdict.RATE_LIMITED);
+        if (journal != null) {
+            journal(PacketJournal.Verdict.RATE_LIMITED, address, port, payload, 0);
+        }
+        stat.incrementRateLimitedCount();
+        metrics.recordRateLimited();
+        updateGUI(stat);
+        return true;
+    }
+
+    /**
+     * 执行网络损伤流水线并记录模拟丢失与延迟。返回 false 表示数据包被丢弃，延迟与回复份数见 result。
+     */
+    private boolean impair(Statistic stat, InetAddress address, int port, ByteBuffer payload, ImpairmentResult result,
+                           PacketLifecycleEvent trace) {
+        long begin = trace != null ? System.nanoTime() : 0;
+        impairments.evaluate(stat, address, payload.remaining(), result);
+        if (trace != null) {
+            long now = System.nanoTime();
+            trace.impaired(now - begin);
+            if (result.isDropped()) {
+                trace.finish(PacketJournal.Verdict.DROPPED, now);
+            }
+        }
+        if (result.isDropped()) {
+            if (journal != null) {
+                journal(PacketJournal.Verdict.DROPPED, address, port, payload, 0);
+            } else if (gui != null) {
+                gui.appendLoss(address, payload);
+            }
+            stat.incrementDropCount();
+            metrics.recordDropped();
+            updateGUI(stat);
+            return false;
+        }
+        int delayTime = result.getDelayMillis();
+        if (delayTime > 0) {
+            if (journal != null) {
+                journal(PacketJournal.Verdict.DELAYED, address, port, payload, delayTime);
+            } else if (gui != null) {
+                gui.appendDelay(address, delayTime, payload);
+            }
+            stat.incrementDelayCount();
+            metrics.recordDelayed();
+            updateGUI(stat);
+        }
+        return true;
+    }
+
+    /**
+     * 写入数据包日志。收包线程上的判定结果在这里解析序号，回复路径直接使用已解析的负载。
+     */
+    private void journal(PacketJournal.Verdict verdict, InetAddress address, int port, ByteBuffer payload, int extra) {
+        PingPayload parsed = payloads.get();
+        long sequence = parsed.parse(payload) ? parsed.getSequenceNumber() : -1;
+        journal.append(verdict, address, port, sequence, payload, extra);
+    }
+
+    /**
+     * start 为数据包收到的时间，延迟的数据包为计划发送时间，用于统计服务端处理耗时。
+     * copies 大于 1 时紧接着重复发送同一回复。二进制协议的数据包在发送前写入收到时间（start，
+     * 模拟延迟因此计入去程）和发出时间，服务端驻留时间只包含排队与处理。
+     * 开启独立发送阶段时回复拷贝进发送队列，由发送线程写入发出时间并发送，处理耗时在发送完成时统计。
+     */
+    private void handlePacket(Statistic stat, DatagramSocket socket, DatagramPacket packet, long start, int copies,
+                              PacketLifecycleEvent trace) {
+        if (trace != null) {
+            trace.handling(System.nanoTime());
+        }
+        PingPayload payload = payloads.get();
+        if (!payload.parse(packet.getData(), packet.getOffset(), packet.getLength())) {
+            finish(trace, PacketJournal.Verdict.MALFORMED);
+            metrics.recordMalformed();
+            if (journal != null) {
+                journal.append(PacketJournal.Verdict.MALFORMED, packet.getAddress(), packet.getPort(), -1,
+                        packet.getData(), packet.getOffset(), packet.getLength(), 0);
+            }
+            return;
+        }
+        updateGUI(stat);
+        if (gui != null && journal == null) {
+            gui.appendMessage(messageNumber.getAndIncrement(), packet.getAddress(), packet.getPort(), socket.getLocalPort(),
+                    ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()), payload);
+        }
+
+        // 接收到的数据包已带有源地址和端口，直接原样发回
+        if (trace != null) {
+            trace.handled(System.nanoTime());
+        }
+        if (sender != null) {
+            if (!sender.send(stat, socket, packet, start, copies, payload.isBinary(), clock.toEpochNanos(start), trace)) {
+                finish(trace, PacketJournal.Verdict.SHED);
+                stat.incrementShedCount();
+                onShed(stat);
+                journalReply(PacketJournal.Verdict.SHED, packet, payload);
+            }
+            return;
+        }
+        if (payload.isBinary()) {
+            PingPayload.stamp(packet.getData(), packet.getOffset(), clock.toEpochNanos(start),
+                    clock.toEpochNanos(System.nanoTime()));
+        }
+        try {
+            for (int i = 0; i < copies; i++) {
+                socket.send(packet);
+            }
+        } catch (Exception e) {
+            onSendFailed(stat, trace);
+            journalReply(PacketJournal.Verdict.SEND_FAILED, packet, payload);
+            throw new RuntimeException("发送响应错误: " + e.getMessage(), e);
+        }
+        finish(trace, PacketJournal.Verdict.REPLIED);
+        long elapsed = System.nanoTime() - start;
+        stat.recordProcessing(elapsed);
+        metrics.recordReplied(elapsed);
+        recordDuplicates(copies);
+        journalReply(PacketJournal.Verdict.REPLIED, packet, payload);
+    }
+
+    private void journalReply(PacketJournal.Verdict verdict, DatagramPacket packet, PingPayload payload) {
+        if (journal != null) {
+            journal.append(verdict, packet.getAddress(), packet.getPort(), payload.getSequenceNumber(),
+                    packet.getData(), packet.getOffset(), packet.getLength(), 0);
+        }
+    }
+
+    /**
+     * port 为 selector 引擎的监听端口，其余模式为 null。回复进入发送队列时计入端口的在途数，发送后再减去。
+     */
+    private void handleBuffer(Statistic stat, DatagramChannel channel, InetSocketAddress source, ByteBuffer buffer,
+                              long start, int copies, MultiPortListener.Port port, PacketLifecycleEvent trace)
+            throws IOException {
+        if (trace != null) {
+            trace.handling(System.nanoTime());
+        }
+        PingPayload payload = payloads.get();
+        if (!payload.parse(buffer)) {
+            finish(trace, PacketJournal.Verdict.MALFORMED);
+            metrics.recordMalformed();
+            if (journal != null) {
+                journal.append(PacketJournal.Verdict.MALFORMED, source.getAddress(), source.getPort(), -1, buffer, 0);
+            }
+            return;
+        }
+        updateGUI(stat);
+        if (gui != null && journal == null) {
+            gui.appendMessage(messageNumber.getAndIncrement(), source.getAddress(), source.getPort(), channel.socket().getLocalPort(),
+                    buffer, payload);
+        }
+
+        // 原样回显接收缓冲区中的数据
+        if (trace != null) {
+            trace.handled(System.nanoTime());
+        }
+        if (sender != null) {
+            if (port != null) {
+                port.acquire();
+            }
+            if (!sender.send(stat, channel, source, buffer, start, copies, payload.isBinary(), clock.toEpochNanos(start),
+                    port != null ? port::release : null, trace)) {
+                if (port != null) {
+                    port.release();
+                }
+                finish(trace, PacketJournal.Verdict.SHED);
+                stat.incrementShedCount();
+                onShed(stat);
+                journalReply(PacketJournal.Verdict.SHED, source, buffer, payload);
+            }
+            return;
+        }
+        if (payload.isBinary()) {
+            PingPayload.stamp(buffer, clock.toEpochNanos(start), clock.toEpochNanos(System.nanoTime()));
+        }
+        int position = buffer.position();
+        boolean sent = false;
+        try {
+            for (int i = 0; i < copies; i++) {
+                sent = sendBuffer(channel, buffer, position, source);
+                if (!sent) {
+                    break;
+                }
+            }
+        } finally {
+            // 发送异常或非阻塞通道持续已满，回复没有发出
+            if (!sent) {
+                onSendFailed(stat, trace);
+                buffer.position(position);
+                journalReply(PacketJournal.Verdict.SEND_FAILED, source, buffer, payload);
+            }
+        }
+        if (!sent) {
+            return;
+        }
+        finish(trace, PacketJournal.Verdict.REPLIED);
+        long elapsed = System.nanoTime() - start;
+        stat.recordProcessing(elapsed);
+        metrics.recordReplied(elapsed);
+        recordDuplicates(copies);
+        buffer.position(position);
+        journalReply(PacketJournal.Verdict.REPLIED, source, buffer, payload);
+    }
+
+    /**
+     * 从 position 开始发送一次回复。selector 引擎的通道是非阻塞的，发送缓冲区已满时 send 返回 0，
+     * 与发送阶段一样短暂自旋重试，仍失败返回 false；阻塞通道第一次就会发出。
+     */
+    private static boolean sendBuffer(DatagramChannel channel, ByteBuffer buffer, int position,
+                                      InetSocketAddress target) throws IOException {
+        for (int attempt = 0; attempt < SenderStage.SEND_RETRIES; attempt++) {
+            buffer.position(position);
+            if (channel.send(buffer, target) > 0) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        return false;
+    }
+
+    private void journalReply(PacketJournal.Verdict verdict, InetSocketAddress source, ByteBuffer buffer,
+                              PingPayload payload) {
+        if (journal != null) {
+            journal.append(verdict, source.getAddress(), source.getPort(), payload.getSequenceNumber(),
+                    buffer, 0);
+        }
+    }
+
+    /**
+     * 发送线程发出一个回复后回调，处理耗时包含在发送队列中等待的时间。日志在这里才记为已回复。
+     */
+    private void onSent(SenderStage.Reply reply) {
+        finish(reply.getTrace(), PacketJournal.Verdict.REPLIED);
+        long elapsed = System.nanoTime() - reply.getStart();
+        reply.getSource().recordProcessing(elapsed);
+        metrics.recordReplied(elapsed);
+        recordDuplicates(reply.getCopies());
+        journalReply(PacketJournal.Verdict.REPLIED, reply);
+    }
+
+    /**
+     * 发送线程放弃一个回复（发送缓冲区持续已满或发送异常）后回调，按过载丢弃计入来源统计，日志记为发送失败。
+     */
+    private void onSendFailed(SenderStage.Reply reply) {
+        onSendFailed(reply.getSource(), reply.getTrace());
+        journalReply(PacketJournal.Verdict.SEND_FAILED, reply);
+    }
+
+    /**
+     * 回复没有发出，与独立发送阶段一样按过载丢弃计入来源统计，日志由调用方记为发送失败。
+     */
+    private void onSendFailed(Statistic stat, PacketLifecycleEvent trace) {
+        finish(trace, PacketJournal.Verdict.SEND_FAILED);
+        stat.incrementShedCount();
+        metrics.recordShed();
+        updateGUI(stat);
+    }
+
+    private void journalReply(PacketJournal.Verdict verdict, SenderStage.Reply reply) {
+        if (journal != null) {
+            InetSocketAddress address = reply.getAddress();
+            journal(verdict, address.getAddress(), address.getPort(), reply.getPayload(), 0);
+        }
+    }
+
+    private static void finish(PacketLifecycleEvent trace, PacketJournal.Verdict verdict) {
+        if (trace != null) {
+            trace.finish(verdict, System.nanoTime());
+        }
+    }
+
+    private void recordDuplicates(int copies) {
+        for (int i = 1; i < copies; i++) {
+            metrics.recordDuplicated();
+        }
+    }
+
+    private void publishMetrics() {
+        String senderText = sender != null
+                ? String.format("    发送队列: %d / %d", sender.getQueueDepth(), sender.getCapacity()) : "";
+        String text = String.format("<html>延迟队列: %d    发送偏差: 平均 %.2f ms / 最大 %.2f ms<br>工作队列: %d / %d%s</html>",
+                timerWheel.getOutstanding(), delayAccuracy.getAverageLatenessMillis(), delayAccuracy.getMaxLatenessMillis(),
+                executor.getQueueDepth(), executor.getCapacity(), senderText);
+        gui.setMetrics(text);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueueDepth();
+    }
+
+    public int getQueueCapacity() {
+        return executor.getCapacity();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getDelayQueueDepth() {
+        return timerWheel.getOutstanding();
+    }
+
+    /**
+     * 阻塞 socket 模式没有缓冲池，返回 -1。
+     */
+    public long getBufferPoolMisses() {
+        return bufferPool != null ? bufferPool.getMisses() : -1;
+    }
+
+    /**
+     * 未开启数据包日志时返回 -1。
+     */
+    public long getJournalDropped() {
+        return journal != null ? journal.getDropped() : -1;
+    }
+
+    /**
+     * 未开启独立发送阶段时返回 null。
+     */
+    public SenderStage getSender() {
+        return sender;
+    }
+
+    public long getMalformedPackets() {
+        return metrics.getMalformed();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public StatisticRegistry getStatistics() {
+        return statistics;
+    }
+
+    public DelayAccuracy getDelayAccuracy() {
+        return delayAccuracy;
+    }
+
+    /**
+     * 执行器或交接环过载丢弃数据包后回调，只更新计数与界面。执行器内部拿不到数据包本身，
+     * 日志由持有数据包的一方写入，见 {@link #journalShed}。
+     */
+    private void onShed(Statistic stat) {
+        metrics.recordShed();
+        updateGUI(stat);
+    }
+
+    /**
+     * 把过载丢弃的数据包写入日志，在任务的丢弃回调或交接环拒绝数据包时调用，须在归还缓冲区之前。
+     * 关闭服务器时线程池丢弃的任务不算过载丢弃，不写日志。
+     */
+    private void journalShed(InetAddress address, int port, ByteBuffer payload) {
+        if (journal != null && running.get()) {
+            journal(PacketJournal.Verdict.SHED, address, port, payload, 0);
+        }
+    }
+
+    private void updateGUI(Statistic stat) {
+        if (gui != null) {
+            gui.markStatsDirty(stat);
+        }
+    }
+
+    /**
+     * 无界面模式下错误输出到标准错误，不弹出对话框。
+     */
+    private void reportError(String message) {
+        if (gui == null) {
+            System.err.println(message);
+        } else {
+            ErrorDialog.showError(message);
+        }
+    }
+
+    /**
+     * 无界面模式下没有窗口提示，绑定端口后打印一行，供守护进程脚本判断服务已就绪。
+     */
+    private void reportListening(int port) {
+        if (gui == null) {
+            System.out.println("正在监听端口 " + port);
+        }
+    }
+
+    private void reportPortChange(int port, boolean added) {
+        if (added) {
+            reportListening(port);
+        } else if (gui == null) {
+            System.out.println("已停止监听端口 " + port);
+        } else {
+            gui.appendLog("已停止监听端口 " + port + "\n");
+        }
+    }
+
+    public ServerSettings getSettings() {
+        return settings;
+    }
+
+    public void stop() {
+        running.set(false);
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        if (portListener != null) {
+            portListener.stop();
+        }
+        timerWheel.stop();
+        executor.shutdownNow();
+        if (sender != null) {
+            sender.stop(1, TimeUnit.SECONDS);
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        delayedExecutor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("线程池没有完全关闭");
+            }
+            if (!delayedExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("延迟执行器没有完全关闭");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public static void main(String[] args) {
+        UDPPingServer server = new UDPPingServer(ServerOptions.parse(args));
+        server.start();
+    }
+}
+
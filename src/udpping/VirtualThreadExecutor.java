@@ -0,0 +1,84 @@
+package udpping;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 每个数据包一个虚拟线程。用信号量限制同时在处理中的数据包数量，超出时丢弃新数据包。
+ * 虚拟线程需要 JDK 21，这里通过反射创建，以便源码仍能在 JDK 17 下编译。
+ */
+public class VirtualThreadExecutor implements PacketExecutor {
+    private final ExecutorService delegate;
+    private final Semaphore inFlight;
+    private final int capacity;
+    private final Consumer<Statistic> shedListener;
+
+    public VirtualThreadExecutor(int capacity, Consumer<Statistic> shedListener) {
+        this.delegate = newVirtualThreadPerTaskExecutor();
+        this.inFlight = new Semaphore(capacity);
+        this.capacity = capacity;
+        this.shedListener = shedListener;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("虚拟线程模式需要 JDK 21 或更高版本", e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        PacketTask task = command instanceof PacketTask ? (PacketTask) command : null;
+        if (!inFlight.tryAcquire()) {
+            if (task != null) {
+                task.discard();
+                task.getSource().incrementShedCount();
+                shedListener.accept(task.getSource());
+            }
+            return;
+        }
+        delegate.execute(() -> {
+            try {
+                command.run();
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return capacity - inFlight.availablePermits();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return getQueueDepth();
+    }
+
+    @Override
+    public boolean isBlockingCheap() {
+        return true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}